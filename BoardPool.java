@@ -0,0 +1,191 @@
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * BoardPool class Populates minefields ahead of time on a background thread, so
+ * that placing the mines at the first click of a game is just a copy. A pool of
+ * a few ready minefields is kept for every board size (number of rows, columns
+ * and mines) that has been registered.
+ *
+ * A pooled minefield's mines are placed before the first square is known, so it
+ * may have a mine there. When it's taken from the pool that mine is moved to a
+ * random empty location (see MineField.moveMineAwayFrom), which gives the same
+ * distribution of minefields as populating at the first click. If the pool for
+ * a size is empty (e.g. the player starts games faster than the background
+ * thread keeps up), the minefield is populated directly, as before.
+ */
+public class BoardPool {
+
+   public static final int DEFAULT_BOARDS_PER_SIZE = 4;
+
+   private final int boardsPerSize;
+   private final Map<BoardSize, BlockingQueue<MineField>> ready = new ConcurrentHashMap<>();
+   private final Map<BoardSize, BlockingQueue<MineField>> spare = new ConcurrentHashMap<>(); // used, to refill
+   private final SplittableRandom seeds = new SplittableRandom();
+   private Thread producer; // started at the first register
+   private boolean wanted; // whether a pool may need refilling; guarded by this
+
+   /**
+    * Create a pool that keeps DEFAULT_BOARDS_PER_SIZE minefields of each size.
+    */
+   public BoardPool() {
+      this(DEFAULT_BOARDS_PER_SIZE);
+   }
+
+   /**
+    * Create a pool.
+    *
+    * @param boardsPerSize number of ready minefields to keep for each size, must
+    *                      be positive
+    */
+   public BoardPool(int boardsPerSize) {
+      this.boardsPerSize = boardsPerSize;
+   }
+
+   /**
+    * Starts keeping ready minefields of the given size, if the pool doesn't
+    * already. Minefields are populated in the background, so this returns at once.
+    *
+    * @param numRows  number of rows, must be positive
+    * @param numCols  number of columns, must be positive
+    * @param numMines number of mines, PRE: 0 <= numMines < numRows * numCols
+    */
+   public void register(int numRows, int numCols, int numMines) {
+      BoardSize size = new BoardSize(numRows, numCols, numMines);
+      spare.putIfAbsent(size, new ArrayBlockingQueue<>(boardsPerSize)); // first, so it's there for any ready pool
+      if (ready.putIfAbsent(size, new ArrayBlockingQueue<>(boardsPerSize)) == null) {
+         wakeProducer();
+      }
+   }
+
+   /**
+    * Removes any current mines on the minefield, and puts mineField.numMines()
+    * mines in random locations on it, ensuring that no mine is placed at (row,
+    * col). Same as mineField.populateMineField(row, col), but uses a ready
+    * minefield if there is one.
+    *
+    * @param mineField the minefield to populate
+    * @param row       the row of the location to avoid placing a mine
+    * @param col       the column of the location to avoid placing a mine PRE:
+    *                  mineField.inRange(row, col)
+    * @return whether a ready minefield was used
+    */
+   public boolean populate(MineField mineField, int row, int col) {
+      BoardSize size = new BoardSize(mineField.numRows(), mineField.numCols(), mineField.numMines());
+      BlockingQueue<MineField> boards = ready.get(size);
+      MineField board = (boards == null) ? null : boards.poll();
+      if (board == null) {
+         mineField.populateMineField(row, col);
+         return false;
+      }
+      mineField.copyMinesFrom(board);
+      mineField.moveMineAwayFrom(row, col);
+      spare.get(size).offer(board);
+      wakeProducer();
+      return true;
+   }
+
+   /**
+    * Returns the number of ready minefields of the given size.
+    *
+    * @param numRows  number of rows
+    * @param numCols  number of columns
+    * @param numMines number of mines
+    * @return number of ready minefields (0 if the size isn't registered)
+    */
+   public int numReady(int numRows, int numCols, int numMines) {
+      BlockingQueue<MineField> boards = ready.get(new BoardSize(numRows, numCols, numMines));
+      return (boards == null) ? 0 : boards.size();
+   }
+
+   // <put private methods here>
+   /**
+    * Tells the background thread a pool may need refilling, starting the thread
+    * if it hasn't been.
+    */
+   private synchronized void wakeProducer() {
+      wanted = true;
+      if (producer == null) {
+         producer = new Thread(this::produce, "board pool");
+         producer.setDaemon(true); // never keeps the program running
+         producer.setPriority(Thread.MIN_PRIORITY); // stays out of the way of the event thread
+         producer.start();
+      }
+      notifyAll();
+   }
+
+   /**
+    * Body of the background thread: tops up every pool, then waits until one
+    * may need topping up again.
+    */
+   private void produce() {
+      while (true) {
+         synchronized (this) {
+            while (!wanted) {
+               try {
+                  wait();
+               }
+               catch (InterruptedException e) {
+                  return;
+               }
+            }
+            wanted = false;
+         }
+         for (Map.Entry<BoardSize, BlockingQueue<MineField>> entry : ready.entrySet()) {
+            BoardSize size = entry.getKey();
+            BlockingQueue<MineField> boards = entry.getValue();
+            while (boards.remainingCapacity() > 0) {
+               MineField board = spare.get(size).poll();
+               if (board == null) {
+                  board = new MineField(size.numRows, size.numCols, size.numMines, nextSeed());
+               }
+               board.populateMineField(); // anywhere, since the first square isn't known yet
+               boards.offer(board);
+            }
+         }
+      }
+   }
+
+   /**
+    * Returns a seed for a new pooled minefield.
+    *
+    * @return a new seed
+    */
+   private synchronized long nextSeed() {
+      return seeds.nextLong();
+   }
+
+   //-------------------------------------------------------------------------------------
+   // INNER CLASS BoardSize
+   // the dimensions and number of mines of a minefield, used as the key of a pool
+   private static class BoardSize {
+
+      final int numRows;
+      final int numCols;
+      final int numMines;
+
+      BoardSize(int numRows, int numCols, int numMines) {
+         this.numRows = numRows;
+         this.numCols = numCols;
+         this.numMines = numMines;
+      }
+
+      public boolean equals(Object other) {
+         if (!(other instanceof BoardSize)) {
+            return false;
+         }
+         BoardSize size = (BoardSize) other;
+         return numRows == size.numRows && numCols == size.numCols && numMines == size.numMines;
+      }
+
+      public int hashCode() {
+         return Objects.hash(numRows, numCols, numMines);
+      }
+   }
+   //------ END OF INNER CLASS BoardSize----------------------------------------------
+
+}
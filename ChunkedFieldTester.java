@@ -0,0 +1,143 @@
+public class ChunkedFieldTester{
+
+   private static void Assert(int expected, int actual, String name){
+      System.out.printf("%s - expected: %d actual: %d -- %s\n",name,expected,actual,(expected == actual ? "PASSED" : "FAILED"));
+   }
+   private static void AssertTrue(boolean actual, String name){
+      System.out.printf("%s - expected: true actual: %b -- %s\n",name,actual,(actual ? "PASSED" : "FAILED"));
+   }
+   
+   private static void AssertFalse(boolean actual, String name){
+      System.out.printf("%s - expected: false actual: %b -- %s\n",name,actual,(!actual ? "PASSED" : "FAILED"));
+   }
+   
+   private static int countMines(ChunkedMineField field, int chunkRow, int chunkCol){
+      int count = 0;
+      for(int r = 0;r<ChunkedMineField.CHUNK_SIZE;r++){
+         for(int c = 0;c<ChunkedMineField.CHUNK_SIZE;c++){
+            if(field.hasMine(chunkRow*ChunkedMineField.CHUNK_SIZE + r, chunkCol*ChunkedMineField.CHUNK_SIZE + c)){
+               count++;
+            }
+         }
+      }
+      return count;
+   }
+   
+   private static void testDeterministicChunks(){
+      System.out.println("Testing Deterministic Chunks");
+      ChunkedMineField small = new ChunkedMineField(7L, 800, 1);
+      ChunkedMineField large = new ChunkedMineField(7L, 800, 1 << 20);
+      Assert(800, countMines(small, -3, 5), "Mines in chunk (-3,5)");
+      Assert(800, countMines(small, 0, 0), "Mines in chunk (0,0)");
+      Assert(1, small.numCachedChunks(), "Cache keeps to its budget");
+      int differences = 0;
+      for(int r = -100;r<100;r++){
+         for(int c = -100;c<100;c++){
+            if(small.hasMine(r,c) != large.hasMine(r,c)){
+               differences++;
+            }
+         }
+      }
+      Assert(0, differences, "Evicted chunks regenerate the same mines");
+      int mineCol = 0;
+      while(!small.hasMine(0,mineCol)){
+         mineCol++;
+      }
+      small.setSafeSquare(0,mineCol);
+      AssertFalse(small.hasMine(0,mineCol), "Safe square has no mine");
+      System.out.println();
+   }
+   
+   private static void testUncoverAcrossChunks(){
+      System.out.println("Testing Uncover Across Chunks");
+      ChunkedMineField mines = new ChunkedMineField(11L, 600, 1 << 20);
+      ChunkedVisibleField field = null;
+      int row = 0;
+      int col = 0;
+      for(int d = 0;d<64 && (field == null || field.numStoredChunks() < 2);d++){ // find an empty region that
+         row = 63 - d;                                                           // crosses a chunk border
+         col = -1;
+         if(!mines.hasMine(row,col) && mines.numAdjacentMines(row,col) == 0){
+            field = new ChunkedVisibleField(mines);
+            field.uncover(row,col);
+         }
+      }
+      AssertTrue(field != null && field.numStoredChunks() > 1, "Empty region spans chunks");
+      int opened = field.numLastUncovered();
+      int mismatches = 0;
+      int openCount = 0;
+      for(int r = row - 400;r<row + 400;r++){
+         for(int c = col - 400;c<col + 400;c++){
+            int status = field.getStatus(r,c);
+            if(status >= 0){
+               openCount++;
+               if(status != mines.numAdjacentMines(r,c) || mines.hasMine(r,c)){
+                  mismatches++;
+               }
+               if(status == 0){
+                  for(int nr = r-1;nr<=r+1;nr++){
+                     for(int nc = c-1;nc<=c+1;nc++){
+                        if(!field.isUncovered(nr,nc)){
+                           mismatches++;
+                        }
+                     }
+                  }
+               }
+            }
+         }
+      }
+      Assert(0, mismatches, "Opened region is consistent across chunks");
+      Assert(opened, openCount, "Opened count matches region");
+      field.cycleGuess(row + 500, col + 500);
+      Assert(VisibleField.MINE_GUESS, field.getStatus(row + 500, col + 500), "Guess far away");
+      Assert(1, field.numMinesGuessed(), "Mines guessed");
+      AssertFalse(field.isGameOver(), "Game not over");
+      System.out.println();
+   }
+   
+   private static void testUncoverAcrossEdge(){
+      System.out.println("Testing Uncover Across Edge");
+      ChunkedMineField mines = new ChunkedMineField(11L, 600, 1 << 20);
+      int row = Integer.MAX_VALUE;
+      int col = Integer.MAX_VALUE;
+      while(mines.hasMine(row,col) || mines.numAdjacentMines(row,col) != 0){ // an empty square on the last row
+         col--;
+      }
+      ChunkedVisibleField field = new ChunkedVisibleField(mines);
+      field.uncover(row,col);
+      AssertTrue(field.isUncovered(Integer.MIN_VALUE,col), "Region wraps to the first row");
+      int mismatches = 0;
+      int openCount = 0;
+      for(int dr = -400;dr<400;dr++){
+         for(int dc = -400;dc<400;dc++){
+            int r = row + dr;   // wraps
+            int c = col + dc;
+            int status = field.getStatus(r,c);
+            if(status >= 0){
+               openCount++;
+               if(status != mines.numAdjacentMines(r,c) || mines.hasMine(r,c)){
+                  mismatches++;
+               }
+               if(status == 0){
+                  for(int nr = -1;nr<=1;nr++){
+                     for(int nc = -1;nc<=1;nc++){
+                        if(!field.isUncovered(r + nr,c + nc)){
+                           mismatches++;
+                        }
+                     }
+                  }
+               }
+            }
+         }
+      }
+      Assert(0, mismatches, "Opened region is consistent across the edge");
+      Assert(field.numLastUncovered(), openCount, "Opened count matches region");
+      System.out.println();
+   }
+   
+   public static void main(String[] args){
+      testDeterministicChunks();
+      testUncoverAcrossChunks();
+      testUncoverAcrossEdge();
+   }
+}
@@ -0,0 +1,211 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * ChunkedMineField class with the locations of mines for an endless game. The
+ * field has no edges: any (row, col) pair of ints is a valid location, and it
+ * wraps around, so row Integer.MAX_VALUE is next to row Integer.MIN_VALUE (and
+ * the same for columns), as int arithmetic on the coordinates gives. It is
+ * divided into CHUNK_SIZE x CHUNK_SIZE chunks, and the mines of a chunk are
+ * derived from the seed and the chunk coordinates the first time the chunk is
+ * looked at, so the field never has to be stored as a whole. Because a chunk can
+ * always be derived again, generated chunks are kept in a least recently used
+ * cache that is bounded by a memory budget; the memory used depends on how much
+ * of the field is being looked at, not on the size of the field.
+ *
+ * Every chunk has exactly minesPerChunk() mines, except that one location can be
+ * marked safe (see setSafeSquare), which is how the first square a player opens
+ * is guaranteed not to be a mine.
+ */
+public class ChunkedMineField {
+
+   public static final int CHUNK_SIZE = 64; // rows and columns per chunk; one row of a chunk is one long
+   private static final int CHUNK_SHIFT = 6;
+   private static final int CHUNK_BYTES = CHUNK_SIZE * Long.BYTES + 64; // bits of a chunk plus object overhead
+
+   private final long seed;
+   private final int minesPerChunk;
+   private final int maxCachedChunks;
+   private final Map<Long, long[]> chunks; // chunk key -> one long of mine bits per chunk row, in LRU order
+
+   private boolean hasSafeSquare;
+   private int safeRow;
+   private int safeCol;
+
+   private long lastKey; // the most recently used chunk, so runs of lookups in one chunk skip the map
+   private long[] lastChunk;
+
+   /**
+    * Create an endless minefield whose mines are determined by the given seed.
+    * Two fields created with the same seed and minesPerChunk have the same mines.
+    *
+    * @param seed          seed the mine locations are derived from
+    * @param minesPerChunk number of mines in each chunk. PRE: 0 <= minesPerChunk
+    *                      < CHUNK_SIZE * CHUNK_SIZE
+    * @param memoryBudget  roughly how many bytes the cache of generated chunks may
+    *                      use; at least one chunk is always kept
+    */
+   public ChunkedMineField(long seed, int minesPerChunk, long memoryBudget) {
+      this.seed = seed;
+      this.minesPerChunk = minesPerChunk;
+      this.maxCachedChunks = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / CHUNK_BYTES));
+      this.chunks = new LinkedHashMap<Long, long[]>(16, 0.75f, true) { // access order, i.e. least recently used
+                                                                        // first
+         protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+            return size() > maxCachedChunks;
+         }
+      };
+      this.lastChunk = null;
+   }
+
+   /**
+    * Makes (row, col) a location that never has a mine, whatever its chunk was
+    * generated with. Replaces any safe square set before.
+    *
+    * @param row row of the location
+    * @param col column of the location
+    */
+   public void setSafeSquare(int row, int col) {
+      hasSafeSquare = true;
+      safeRow = row;
+      safeCol = col;
+   }
+
+   /**
+    * Returns whether there is a mine in this square. Generates (or regenerates)
+    * the chunk it is in if it isn't cached.
+    *
+    * @param row row of the location to check
+    * @param col column of the location to check
+    * @return whether there is a mine in this square
+    */
+   public boolean hasMine(int row, int col) {
+      if (hasSafeSquare && row == safeRow && col == safeCol) {
+         return false;
+      }
+      long[] chunk = chunk(row >> CHUNK_SHIFT, col >> CHUNK_SHIFT);
+      return ((chunk[row & (CHUNK_SIZE - 1)] >>> col) & 1L) != 0; // shifts only use the low 6 bits of col
+   }
+
+   /**
+    * Returns the number of mines adjacent to the specified location (not counting
+    * a possible mine at (row, col) itself), looking across chunk borders, and
+    * around the edges of the int range, as needed. The return value will be in
+    * the range [0,8].
+    *
+    * @param row row of the location to check
+    * @param col column of the location to check
+    * @return the number of mines adjacent to the square at (row, col)
+    */
+   public int numAdjacentMines(int row, int col) {
+      int count = 0;
+      for (int dr = -1; dr <= 1; dr++) {
+         for (int dc = -1; dc <= 1; dc++) {
+            if ((dr != 0 || dc != 0) && hasMine(row + dr, col + dc)) {
+               count++;
+            }
+         }
+      }
+      return count;
+   }
+
+   /**
+    * Returns the number of mines in every chunk.
+    *
+    * @return mines per chunk
+    */
+   public int minesPerChunk() {
+      return minesPerChunk;
+   }
+
+   /**
+    * Returns the number of chunks currently held in the cache.
+    *
+    * @return number of cached chunks
+    */
+   public int numCachedChunks() {
+      return chunks.size();
+   }
+
+   /**
+    * Returns the row or column of the chunk that holds the given row or column.
+    *
+    * @param rowOrCol a row or column of the field
+    * @return the chunk row or column it belongs to
+    */
+   public static int chunkOf(int rowOrCol) {
+      return rowOrCol >> CHUNK_SHIFT;
+   }
+
+   /**
+    * Returns a single long that identifies the chunk at the given chunk
+    * coordinates.
+    *
+    * @param chunkRow row of the chunk
+    * @param chunkCol column of the chunk
+    * @return key of the chunk
+    */
+   public static long chunkKey(int chunkRow, int chunkCol) {
+      return ((long) chunkRow << 32) | (chunkCol & 0xFFFFFFFFL);
+   }
+
+   // <put private methods here>
+   /**
+    * Returns the mine bits of a chunk, from the cache if possible.
+    *
+    * @param chunkRow row of the chunk
+    * @param chunkCol column of the chunk
+    * @return one long of mine bits per row of the chunk
+    */
+   private long[] chunk(int chunkRow, int chunkCol) {
+      long key = chunkKey(chunkRow, chunkCol);
+      if (lastChunk != null && key == lastKey) {
+         return lastChunk;
+      }
+      long[] chunk = chunks.get(key); // also marks it as most recently used
+      if (chunk == null) {
+         chunk = generateChunk(key);
+         chunks.put(key, chunk);
+      }
+      lastKey = key;
+      lastChunk = chunk;
+      return chunk;
+   }
+
+   /**
+    * Places minesPerChunk mines in a new chunk, using a random generator seeded
+    * from the field's seed and the chunk's key, so the same chunk always gets the
+    * same mines. Uses Floyd's sampling algorithm, so there are no retries.
+    *
+    * @param key key of the chunk
+    * @return one long of mine bits per row of the chunk
+    */
+   private long[] generateChunk(long key) {
+      SplittableRandom random = new SplittableRandom(mix(seed ^ mix(key)));
+      long[] chunk = new long[CHUNK_SIZE];
+      int locations = CHUNK_SIZE * CHUNK_SIZE;
+      for (int j = locations - minesPerChunk; j < locations; j++) {
+         int loc = random.nextInt(j + 1);
+         if (((chunk[loc >>> CHUNK_SHIFT] >>> loc) & 1L) != 0) { // already taken, so take j instead
+            loc = j;
+         }
+         chunk[loc >>> CHUNK_SHIFT] |= 1L << loc;
+      }
+      return chunk;
+   }
+
+   /**
+    * Scrambles the bits of a long (the SplitMix64 finalizer), so that nearby
+    * chunk keys give unrelated seeds.
+    *
+    * @param z the value to scramble
+    * @return the scrambled value
+    */
+   private static long mix(long z) {
+      z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+      z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+      return z ^ (z >>> 31);
+   }
+
+}
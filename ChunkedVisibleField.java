@@ -0,0 +1,294 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ChunkedVisibleField class This is what the player can see of a
+ * ChunkedMineField, i.e. the visible field of an endless game. It uses the same
+ * square statuses as VisibleField (see the public constants there) and offers
+ * the same kind of mutators (cycleGuess(), uncover()).
+ *
+ * Only chunks the player has changed are stored: a chunk that is missing from
+ * the map is entirely COVERED. So memory depends on the explored area, not on
+ * the size of the field, and the underlying ChunkedMineField is free to evict
+ * and regenerate the mine chunks behind it. uncover() flood fills across chunk
+ * borders like VisibleField.uncover() does across the whole board, except that
+ * a single call opens at most MAX_FLOOD_SQUARES squares (an empty region in an
+ * endless field could otherwise go on forever if the mines are sparse enough);
+ * the empty squares at the edge of a region cut off this way stay open with
+ * covered neighbors, which the player can open with more clicks. Regions wrap
+ * around the edges of the int range, as the ChunkedMineField does.
+ */
+public class ChunkedVisibleField {
+
+   public static final int MAX_FLOOD_SQUARES = 1 << 22;
+
+   private static final int CHUNK_SIZE = ChunkedMineField.CHUNK_SIZE;
+   private static final int INITIAL_STACK_SIZE = 64;
+
+   private ChunkedMineField mineField;
+   private Map<Long, byte[]> chunks; // chunk key -> row-major statuses of the chunk's squares
+   private int minesFound;
+   private boolean exploded;
+   private int lastUncovered;
+   private long[] floodStack = new long[INITIAL_STACK_SIZE]; // squares packed as (row << 32) | col
+   private long lastKey; // the most recently used stored chunk, so runs of lookups in one chunk skip the map
+   private byte[] lastChunk;
+
+   /**
+    * Create a visible field for the given endless minefield, with every square
+    * covered and no mines guessed.
+    *
+    * @param mineField the minefield to use for this ChunkedVisibleField
+    */
+   public ChunkedVisibleField(ChunkedMineField mineField) {
+      this.mineField = mineField;
+      this.chunks = new HashMap<>();
+      this.minesFound = 0;
+      this.exploded = false;
+   }
+
+   /**
+    * Returns a reference to the minefield that this field "covers"
+    *
+    * @return the minefield
+    */
+   public ChunkedMineField getMineField() {
+      return mineField;
+   }
+
+   /**
+    * Returns the visible status of the square indicated. See the public constants
+    * of VisibleField for the possible values and their meanings.
+    *
+    * @param row row of the square
+    * @param col col of the square
+    * @return the status of the square at location (row, col)
+    */
+   public int getStatus(int row, int col) {
+      byte[] chunk = storedChunk(chunkKey(row, col));
+      return (chunk == null) ? VisibleField.COVERED : chunk[offset(row, col)];
+   }
+
+   /**
+    * Returns whether this square has been uncovered.
+    *
+    * @param row of the square
+    * @param col of the square
+    * @return whether the square is uncovered
+    */
+   public boolean isUncovered(int row, int col) {
+      return getStatus(row, col) > VisibleField.COVERED;
+   }
+
+   /**
+    * Returns the number of squares the player has guessed are mines.
+    *
+    * @return number of MINE_GUESS squares
+    */
+   public int numMinesGuessed() {
+      return minesFound;
+   }
+
+   /**
+    * Returns whether the game is over, which in an endless game only happens when
+    * a mine is uncovered.
+    *
+    * @return whether game over
+    */
+   public boolean isGameOver() {
+      return exploded;
+   }
+
+   /**
+    * Returns the number of chunks that hold changed squares.
+    *
+    * @return number of stored chunks
+    */
+   public int numStoredChunks() {
+      return chunks.size();
+   }
+
+   /**
+    * Cycles through covered states for a square exactly like
+    * VisibleField.cycleGuess(): COVERED to MINE_GUESS to QUESTION to COVERED;
+    * calls on uncovered squares have no effect.
+    *
+    * @param row row of the square
+    * @param col col of the square
+    */
+   public void cycleGuess(int row, int col) {
+      switch (getStatus(row, col)) {
+         case VisibleField.COVERED:
+            minesFound++;
+            setStatus(row, col, VisibleField.MINE_GUESS);
+            break;
+         case VisibleField.MINE_GUESS:
+            minesFound--;
+            setStatus(row, col, VisibleField.QUESTION);
+            break;
+         case VisibleField.QUESTION:
+            setStatus(row, col, VisibleField.COVERED);
+            break;
+      }
+   }
+
+   /**
+    * Uncovers this square and returns false iff you uncover a mine here. Like
+    * VisibleField.uncover(), an empty square also opens the region of empty
+    * squares around it and their numbered border, going around MINE_GUESS squares
+    * and opening QUESTION squares; the region may span any number of chunks (up to
+    * MAX_FLOOD_SQUARES squares per call).
+    *
+    * @param row of the square
+    * @param col of the square
+    * @return false iff you uncover a mine at (row, col)
+    */
+   public boolean uncover(int row, int col) {
+      lastUncovered = 0;
+      int status = getStatus(row, col);
+      if (status > VisibleField.COVERED || status == VisibleField.MINE_GUESS) {
+         return true;
+      }
+      if (mineField.hasMine(row, col)) {
+         setStatus(row, col, VisibleField.EXPLODED_MINE);
+         exploded = true;
+         lastUncovered = 1;
+         return false;
+      }
+      lastUncovered = floodFill(row, col);
+      return true;
+   }
+
+   /**
+    * Returns the number of squares that were opened by the most recent call to
+    * uncover.
+    *
+    * @return number of squares opened by the last uncover
+    */
+   public int numLastUncovered() {
+      return lastUncovered;
+   }
+
+   // <put private methods here>
+   /**
+    * Opens the non-mine square at (row, col) and, if it has no adjacent mines,
+    * the region around it, with an explicit work stack like
+    * VisibleField.floodFill().
+    *
+    * @param row row of the square to start from
+    * @param col col of the square to start from
+    * @return the number of squares that were opened
+    */
+   private int floodFill(int row, int col) {
+      int opened = 1;
+      int size = 0;
+      int count = mineField.numAdjacentMines(row, col);
+      setStatus(row, col, count);
+      if (count == 0) {
+         floodStack[size++] = pack(row, col);
+      }
+      while (size > 0) {
+         long square = floodStack[--size];
+         int r = (int) (square >> 32);
+         int c = (int) square;
+         for (int dr = -1; dr <= 1; dr++) {
+            for (int dc = -1; dc <= 1; dc++) {
+               int nr = r + dr; // wraps around the edge of the ints, like ChunkedMineField.numAdjacentMines
+               int nc = c + dc;
+               int status = getStatus(nr, nc);
+               if (status != VisibleField.COVERED && status != VisibleField.QUESTION) {
+                  continue;
+               }
+               if (opened == MAX_FLOOD_SQUARES) { // stop growing the region
+                  return opened;
+               }
+               count = mineField.numAdjacentMines(nr, nc); // neighbors of an empty square are never mines
+               setStatus(nr, nc, count);
+               opened++;
+               if (count == 0) {
+                  if (size == floodStack.length) {
+                     floodStack = Arrays.copyOf(floodStack, size * 2);
+                  }
+                  floodStack[size++] = pack(nr, nc);
+               }
+            }
+         }
+      }
+      return opened;
+   }
+
+   /**
+    * Changes the status of a square, creating its chunk (all COVERED) if this is
+    * the first change in that chunk.
+    *
+    * @param row    row of the square
+    * @param col    col of the square
+    * @param status the new status
+    */
+   private void setStatus(int row, int col, int status) {
+      long key = chunkKey(row, col);
+      byte[] chunk = storedChunk(key);
+      if (chunk == null) {
+         chunk = new byte[CHUNK_SIZE * CHUNK_SIZE];
+         Arrays.fill(chunk, (byte) VisibleField.COVERED);
+         chunks.put(key, chunk);
+         lastKey = key;
+         lastChunk = chunk;
+      }
+      chunk[offset(row, col)] = (byte) status;
+   }
+
+   /**
+    * Returns the statuses of a chunk, or null if none of its squares have
+    * changed.
+    *
+    * @param key key of the chunk
+    * @return the chunk's statuses or null
+    */
+   private byte[] storedChunk(long key) {
+      if (lastChunk != null && key == lastKey) {
+         return lastChunk;
+      }
+      byte[] chunk = chunks.get(key);
+      if (chunk != null) {
+         lastKey = key;
+         lastChunk = chunk;
+      }
+      return chunk;
+   }
+
+   /**
+    * Returns the key of the chunk holding the given square.
+    *
+    * @param row row of the square
+    * @param col col of the square
+    * @return key of the chunk
+    */
+   private static long chunkKey(int row, int col) {
+      return ChunkedMineField.chunkKey(ChunkedMineField.chunkOf(row), ChunkedMineField.chunkOf(col));
+   }
+
+   /**
+    * Returns the row-major index of the given square within its chunk.
+    *
+    * @param row row of the square
+    * @param col col of the square
+    * @return index within the chunk
+    */
+   private static int offset(int row, int col) {
+      return (row & (CHUNK_SIZE - 1)) * CHUNK_SIZE + (col & (CHUNK_SIZE - 1));
+   }
+
+   /**
+    * Packs a square's coordinates into one long for the work stack.
+    *
+    * @param row row of the square
+    * @param col col of the square
+    * @return the packed coordinates
+    */
+   private static long pack(int row, int col) {
+      return ((long) row << 32) | (col & 0xFFFFFFFFL);
+   }
+
+}
@@ -0,0 +1,149 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ConcurrentFieldTester{
+
+   private static void Assert(long expected, long actual, String name){
+      System.out.printf("%s - expected: %d actual: %d -- %s\n",name,expected,actual,(expected == actual ? "PASSED" : "FAILED"));
+   }
+   private static void AssertTrue(boolean actual, String name){
+      System.out.printf("%s - expected: true actual: %b -- %s\n",name,actual,(actual ? "PASSED" : "FAILED"));
+   }
+
+   private static void AssertFalse(boolean actual, String name){
+      System.out.printf("%s - expected: false actual: %b -- %s\n",name,actual,(!actual ? "PASSED" : "FAILED"));
+   }
+
+   private static void runThreads(int numThreads, Runnable[] work) throws InterruptedException{
+      List<Thread> threads = new ArrayList<>();
+      for(int i = 0;i<numThreads;i++){
+         Thread thread = new Thread(work[i]);
+         threads.add(thread);
+         thread.start();
+      }
+      for(Thread thread : threads){
+         thread.join();
+      }
+   }
+
+   private static void testSameAsVisibleField(){
+      System.out.println("Testing Same As VisibleField");
+      MineField mineField = new MineField(60,80,400,5L);
+      mineField.populateMineField(30,40);
+      ConcurrentVisibleField concurrent = new ConcurrentVisibleField(mineField);
+      VisibleField visible = new VisibleField(mineField);
+      Random random = new Random(1);
+      int differentResults = 0;
+      for(int i = 0;i<300;i++){
+         int row = random.nextInt(60);
+         int col = random.nextInt(80);
+         if(random.nextInt(4) == 0){
+            visible.cycleGuess(row,col);
+            concurrent.cycleGuess(row,col);
+         }
+         else if(visible.uncover(row,col) != concurrent.uncover(row,col)){
+            differentResults++;
+         }
+      }
+      int differentSquares = 0;
+      int opened = 0;
+      for(int r = 0;r<60;r++){
+         for(int c = 0;c<80;c++){
+            if(visible.getStatus(r,c) != concurrent.getStatus(r,c)){
+               differentSquares++;
+            }
+            if(visible.getStatus(r,c) >= 0 && visible.getStatus(r,c) <= 8){
+               opened++;
+            }
+         }
+      }
+      Assert(0, differentResults, "Same uncover results");
+      Assert(0, differentSquares, "Same statuses");
+      Assert(visible.numMinesLeft(), concurrent.numMinesLeft(), "Same mines left");
+      Assert(opened, concurrent.numSafeSquaresOpened(), "Safe squares opened counted");
+      AssertTrue(concurrent.isGameOver(), "Game lost after uncovering mines");
+      System.out.println();
+   }
+
+   private static void testOverlappingFloods() throws InterruptedException{
+      System.out.println("Testing Overlapping Floods");
+      MineField mineField = new MineField(1000,1000,20000,9L);   // sparse, so floods are huge and overlap
+      mineField.populateMineField(500,500);
+      int[] starts = new int[2000];
+      Random random = new Random(2);
+      for(int i = 0;i<starts.length;i++){
+         int square;
+         do{
+            square = random.nextInt(1000 * 1000);
+         } while(mineField.hasMine(square / 1000, square % 1000));
+         starts[i] = square;
+      }
+      VisibleField sequential = new VisibleField(mineField);
+      for(int square : starts){
+         sequential.uncover(square / 1000, square % 1000);
+      }
+      int numThreads = 8;
+      int mismatches = 0;
+      int miscounts = 0;
+      for(int round = 0;round<5;round++){
+         ConcurrentVisibleField field = new ConcurrentVisibleField(mineField);
+         Runnable[] work = new Runnable[numThreads];
+         for(int t = 0;t<numThreads;t++){
+            int first = t;
+            work[t] = () -> {
+               for(int i = first;i<starts.length;i += numThreads){
+                  field.uncover(starts[i] / 1000, starts[i] % 1000);
+               }
+            };
+         }
+         runThreads(numThreads, work);
+         int opened = 0;
+         for(int r = 0;r<1000;r++){
+            for(int c = 0;c<1000;c++){
+               if(field.getStatus(r,c) != sequential.getStatus(r,c)){
+                  mismatches++;
+               }
+               if(field.isUncovered(r,c)){
+                  opened++;
+               }
+            }
+         }
+         if(opened != field.numSafeSquaresOpened()){   // a square opened twice would be counted twice
+            miscounts++;
+         }
+      }
+      Assert(0, mismatches, "Concurrent floods open what one thread would");
+      Assert(0, miscounts, "No square opened twice");
+      System.out.println();
+   }
+
+   private static void testConcurrentGuesses() throws InterruptedException{
+      System.out.println("Testing Concurrent Guesses");
+      MineField mineField = new MineField(9,9,10,3L);
+      mineField.populateMineField(0,0);
+      ConcurrentVisibleField field = new ConcurrentVisibleField(mineField);
+      int numThreads = 6;
+      Runnable[] work = new Runnable[numThreads];
+      for(int t = 0;t<numThreads;t++){
+         work[t] = () -> {
+            for(int i = 0;i<30000;i++){   // 6 * 30000 steps is a whole number of cycles
+               field.cycleGuess(4,4);
+            }
+         };
+      }
+      runThreads(numThreads, work);
+      Assert(VisibleField.COVERED, field.getStatus(4,4), "Every step of the cycle taken once");
+      Assert(10, field.numMinesLeft(), "Guesses counted");
+      Assert(VisibleField.MINE_GUESS, field.cycleGuess(4,4), "Cycle returns new status");
+      Assert(9, field.numMinesLeft(), "Guess counted");
+      AssertFalse(field.isGameOver(), "Game not over");
+      System.out.println();
+   }
+
+   public static void main(String[] args) throws InterruptedException{
+      testSameAsVisibleField();
+      testOverlappingFloods();
+      testConcurrentGuesses();
+   }
+}
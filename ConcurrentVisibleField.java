@@ -0,0 +1,280 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ConcurrentVisibleField class What the players can see of a MineField in a
+ * co-op game, where many players (threads) uncover and guess squares of one
+ * board at once. It uses the same square statuses as VisibleField (see the
+ * public constants there) and offers the same kind of mutators (cycleGuess(),
+ * uncover()), which may be called from any number of threads at the same time
+ * without any locking.
+ *
+ * Every change to a square is a compare-and-set of its status byte, from the
+ * status it was just seen to have, so a square is claimed by exactly one
+ * thread: when two flood fills reach the same square, one of them opens it
+ * (and goes on from it, if it's empty) and the other sees it open and stops
+ * there. So overlapping floods never open a square twice, and together open
+ * exactly what one flood would. The counters behind numMinesLeft() and
+ * isGameOver() are LongAdders, added to by the thread that won each change
+ * (once per flood, not per square), so threads don't contend on them either.
+ * Reading a counter while moves are being made gives a value that was right at
+ * some point during the read.
+ *
+ * There is no undo and there are no listeners: views poll getStatus(). The
+ * MineField must have its mines placed before the field is shared, and not be
+ * changed while it is (its reads are then safe from any thread). Its opening
+ * queries (numOpenings etc.) aren't reads in this sense, since they may label
+ * the openings, so they aren't used here and mustn't be called while it's shared.
+ */
+public class ConcurrentVisibleField {
+
+   private static final VarHandle STATUS = MethodHandles.arrayElementVarHandle(byte[].class);
+   private static final int INITIAL_STACK_SIZE = 64;
+
+   private final MineField mineField;
+   private final int numCols; // cached from mineField for the index helpers
+   private final byte[] mineData; // row-major status of every square, only accessed through STATUS
+   private final LongAdder minesFound = new LongAdder();
+   private final LongAdder safeSquaresOpened = new LongAdder(); // the game is won when these are all of them
+   private final LongAdder numExploded = new LongAdder(); // the game is lost when this isn't 0
+
+   /**
+    * Create a visible field that has the given underlying mineField, with every
+    * square covered and no mines guessed.
+    *
+    * @param mineField the minefield to use, with its mines already placed
+    */
+   public ConcurrentVisibleField(MineField mineField) {
+      this.mineField = mineField;
+      numCols = mineField.numCols();
+      mineData = new byte[mineField.numRows() * numCols];
+      Arrays.fill(mineData, (byte) VisibleField.COVERED);
+      VarHandle.releaseFence(); // the covered squares are seen by whichever thread the field is handed to
+   }
+
+   /**
+    * Reset the object to its initial state, using the same underlying MineField.
+    * Must not be called while any moves are being made.
+    */
+   public void resetGameDisplay() {
+      Arrays.fill(mineData, (byte) VisibleField.COVERED);
+      minesFound.reset();
+      safeSquaresOpened.reset();
+      numExploded.reset();
+      VarHandle.releaseFence();
+   }
+
+   /**
+    * Returns a reference to the minefield that this field "covers"
+    *
+    * @return the minefield
+    */
+   public MineField getMineField() {
+      return mineField;
+   }
+
+   /**
+    * Returns the visible status of the square indicated.
+    *
+    * @param row row of the square
+    * @param col col of the square
+    * @return the status of the square at location (row, col), see VisibleField.
+    *         PRE: getMineField().inRange(row, col)
+    */
+   public int getStatus(int row, int col) {
+      return (byte) STATUS.getAcquire(mineData, index(row, col));
+   }
+
+   /**
+    * Returns whether this square has been uncovered.
+    *
+    * @param row of the square
+    * @param col of the square
+    * @return whether the square is uncovered PRE: getMineField().inRange(row, col)
+    */
+   public boolean isUncovered(int row, int col) {
+      return getStatus(row, col) > VisibleField.COVERED;
+   }
+
+   /**
+    * Returns the number of mines left to guess, as VisibleField.numMinesLeft().
+    *
+    * @return number of mines - number of MINE_GUESS squares
+    */
+   public int numMinesLeft() {
+      return mineField.numMines() - minesFound.intValue();
+   }
+
+   /**
+    * Returns the number of squares without a mine that have been opened.
+    *
+    * @return number of squares with a status from 0 to 8
+    */
+   public int numSafeSquaresOpened() {
+      return safeSquaresOpened.intValue();
+   }
+
+   /**
+    * Returns whether the game is over: lost once any player has uncovered a
+    * mine, and won once every non-mine square has been uncovered.
+    *
+    * @return whether game over
+    */
+   public boolean isGameOver() {
+      return numExploded.sum() > 0
+            || safeSquaresOpened.sum() == (long) mineData.length - mineField.numMines();
+   }
+
+   /**
+    * Cycles through covered states for a square exactly like
+    * VisibleField.cycleGuess(): COVERED to MINE_GUESS to QUESTION to COVERED;
+    * calls on uncovered squares have no effect. When players cycle the same
+    * square at once, each call moves it one step.
+    *
+    * @param row row of the square
+    * @param col col of the square PRE: getMineField().inRange(row, col)
+    * @return the status the square was left with
+    */
+   public int cycleGuess(int row, int col) {
+      int cell = index(row, col);
+      while (true) {
+         byte old = (byte) STATUS.getAcquire(mineData, cell);
+         byte status;
+         switch (old) {
+            case VisibleField.COVERED:
+               status = VisibleField.MINE_GUESS;
+               break;
+            case VisibleField.MINE_GUESS:
+               status = VisibleField.QUESTION;
+               break;
+            case VisibleField.QUESTION:
+               status = VisibleField.COVERED;
+               break;
+            default:
+               return old;
+         }
+         if (STATUS.compareAndSet(mineData, cell, old, status)) {
+            if (status == VisibleField.MINE_GUESS) {
+               minesFound.increment();
+            }
+            else if (old == VisibleField.MINE_GUESS) {
+               minesFound.decrement();
+            }
+            return status;
+         }
+      }
+   }
+
+   /**
+    * Uncovers this square and returns false iff it's a mine, flood filling the
+    * region around it like VisibleField.uncover(). Squares another player opens
+    * first (or guesses) stop the fill, as they would if they had been opened (or
+    * guessed) before the call.
+    *
+    * @param row of the square
+    * @param col of the square
+    * @return false iff this call uncovered a mine at (row, col) PRE:
+    *         getMineField().inRange(row, col)
+    */
+   public boolean uncover(int row, int col) {
+      int cell = index(row, col);
+      if (!mineField.hasMine(row, col)) {
+         int opened = floodFill(cell);
+         if (opened > 0) {
+            safeSquaresOpened.add(opened);
+         }
+         return true;
+      }
+      if (claim(cell, VisibleField.EXPLODED_MINE)) {
+         numExploded.increment();
+         return false;
+      }
+      return true;
+   }
+
+   // <put private methods here>
+   /**
+    * Opens the non-mine square at cell, if it's still there to open, and, if it
+    * has no adjacent mines, the whole region around it that no other thread
+    * claims first. Only the thread that opens an empty square pushes it on its
+    * work stack, so each square is expanded once in all.
+    *
+    * @param start row-major index of the square to start from
+    * @return the number of squares this call opened PRE: start has no mine
+    */
+   private int floodFill(int start) {
+      int numRows = mineField.numRows();
+      int count = mineField.numAdjacentMines(start / numCols, start % numCols);
+      if (!claim(start, count)) {
+         return 0;
+      }
+      int opened = 1;
+      if (count != 0) {
+         return opened;
+      }
+      int[] stack = new int[INITIAL_STACK_SIZE]; // each thread has its own
+      int size = 0;
+      stack[size++] = start;
+      while (size > 0) {
+         int cell = stack[--size];
+         int r = cell / numCols;
+         int c = cell % numCols;
+         for (int nr = Math.max(r - 1, 0); nr <= Math.min(r + 1, numRows - 1); nr++) {
+            for (int nc = Math.max(c - 1, 0); nc <= Math.min(c + 1, numCols - 1); nc++) {
+               int neighbor = index(nr, nc);
+               int status = (byte) STATUS.getAcquire(mineData, neighbor);
+               if (status != VisibleField.COVERED && status != VisibleField.QUESTION) { // cheap early out
+                  continue;
+               }
+               count = mineField.numAdjacentMines(nr, nc); // neighbors of an empty square are never mines
+               if (!claim(neighbor, count)) {
+                  continue;
+               }
+               opened++;
+               if (count == 0) {
+                  if (size == stack.length) {
+                     stack = Arrays.copyOf(stack, size * 2);
+                  }
+                  stack[size++] = neighbor;
+               }
+            }
+         }
+      }
+      return opened;
+   }
+
+   /**
+    * Uncovers a square, if it's COVERED or QUESTION, by setting its status with
+    * a compare-and-set, retrying if another thread changes it in between.
+    *
+    * @param cell   row-major index of the square
+    * @param status the status to give it, 0 to 8 or EXPLODED_MINE
+    * @return whether this thread uncovered it (false if it was already open, or
+    *         is a MINE_GUESS)
+    */
+   private boolean claim(int cell, int status) {
+      while (true) {
+         byte old = (byte) STATUS.getAcquire(mineData, cell);
+         if (old != VisibleField.COVERED && old != VisibleField.QUESTION) {
+            return false;
+         }
+         if (STATUS.compareAndSet(mineData, cell, old, (byte) status)) {
+            return true;
+         }
+      }
+   }
+
+   /**
+    * Returns the row-major index of the square at (row, col) in mineData.
+    *
+    * @param row row of the square
+    * @param col col of the square
+    * @return index of the square
+    */
+   private int index(int row, int col) {
+      return row * numCols + col;
+   }
+
+}
@@ -0,0 +1,39 @@
+/**
+ * FieldListener interface
+ * Gets told which squares of a VisibleField changed, so a view (or anything else that mirrors the visible
+ * field) only has to look at those squares instead of the whole board. Squares are given as row-major
+ * indices, i.e. row * numCols + col.
+ * 
+ * Register with VisibleField.addFieldListener.
+ */
+public interface FieldListener {
+
+   /**
+    * Called once at the end of each VisibleField mutator that changed at least one square (so a flood fill
+    * that opens thousands of squares results in a single call).
+    * 
+    * @param field the field that changed
+    * @param cells row-major indices of the changed squares, in the first count entries. The array belongs to
+    *              the field and is reused, so it must not be kept or modified after this call returns.
+    * @param count number of changed squares
+    */
+   void squaresChanged(VisibleField field, int[] cells, int count);
+
+   /**
+    * Called when every square changed at once (e.g., after resetGameDisplay).
+    * 
+    * @param field the field that changed
+    */
+   void fieldReset(VisibleField field);
+
+   /**
+    * Called at the start of each move made on a VisibleField, whether or not it turns out to change anything
+    * (so a recorder sees every click).  Listeners that only care about squares can ignore it.
+    * 
+    * @param field the field the move is made on
+    * @param move  the kind of move, one of the VisibleField move constants (UNCOVER_MOVE etc.)
+    * @param cell  row-major index of the square the move is made on (0 for moves that aren't on a square)
+    */
+   default void moveMade(VisibleField field, int move, int cell) {
+   }
+}
@@ -2,7 +2,10 @@ import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
 import java.awt.GridLayout;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
@@ -11,8 +14,10 @@ import java.awt.event.MouseEvent;
 import javax.swing.BorderFactory;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
 import javax.swing.SwingConstants;
 import javax.swing.border.Border;
 
@@ -40,16 +45,21 @@ class GameBoardPanel extends JPanel {
       Design of the GameBoardPanel:
       The game data (Model) is in the visibleField instance variable (and the underlying minefield in 
       visibleField().getMineField()).
-      Contains inner classes SquareView (a JLabel) and SquareListener (a MouseListener for that label), 
-      which are the View and Controller, respectively, for an individual square (one instance of each of these 
-      is created for each square on the board).  
+      Contains inner classes BoardView (a JComponent) and BoardListener (a MouseListener for that component), 
+      which are the View and Controller, respectively, for the whole grid of squares.  There is only one of each,
+      however big the board is: BoardView paints just the squares inside the part of the board that needs
+      painting (it sits in a JScrollPane, so that's at most the visible part), and BoardListener works out which
+      square was clicked from the mouse coordinates.
       The Model for a single square is not a separate class, but is collectively part of visibleField and can be
       accessed using VisibleField methods getStatus(row, col) and isCovered(row, col), and can be mutated with
       VisibleField methods cycleGuess(row, col) and uncover(row, col) [the last of these can change more than one 
       square]
+      Inner class SquaresUpdater is told by visibleField which squares each of those calls changed, and asks
+      BoardView to repaint only the area they cover.
     */
       
-   private static final int BORDER_THICKNESS = 1;
+   private static final int SQUARE_WIDTH = 25;
+   private static final int SQUARE_HEIGHT = 25;
    private static final Border COVERED_BORDER = BorderFactory.createRaisedBevelBorder();
    private static final Border UNCOVERED_BORDER = BorderFactory.createLoweredBevelBorder();
 
@@ -80,8 +90,8 @@ class GameBoardPanel extends JPanel {
    private JButton newGameButton;
    private JLabel gameStatusLabel;
   
-   // Grid of "buttons" (actually JLabels)
-   private SquareView[][] mySquares;  // need so we can update display en masse
+   // Grid of "buttons" (all painted by one component)
+   private BoardView boardView;
 
    private VisibleField visibleField;     // game data (the Model in MVC)
    
@@ -89,6 +99,10 @@ class GameBoardPanel extends JPanel {
                                  // so we can guarantee it's not a mine, by generating the mines after this click.
    
    private boolean isRandomMineField;    // also can play the game with a fixed mine field
+
+   private static final BoardPool BOARD_POOL = new BoardPool();   // ready minefields, shared by all the panels
+
+   private NoGuessGenerator noGuessGenerator;   // null unless every game has to be winnable without guessing
    
    
    /**
@@ -113,20 +127,49 @@ class GameBoardPanel extends JPanel {
      @param numRows  number of rows the minefield will have, must be positive
      @param numCols  number of columns the minefield will have, must be positive
      @param numMines   number of mines the minefield will have once we populate it.
-     PRE: numMines < 1/3 of possible field locations
+     PRE: numMines < number of possible field locations
    */
    public GameBoardPanel(int numRows, int numCols, int numMines) {
       
+      this(numRows, numCols, numMines, false);
+   }
+
+   /**
+     Creates a GameBoardPanel for a minefield with the given dimensions and number of mines, like the constructor
+     above, but optionally with "no-guess" games: the mines are placed so that the game can be won from the first
+     square opened by logic alone (if such a placement is found quickly enough, see NoGuessGenerator).
+     @param numRows  number of rows the minefield will have, must be positive
+     @param numCols  number of columns the minefield will have, must be positive
+     @param numMines   number of mines the minefield will have once we populate it.
+     @param noGuess  whether games should be winnable without guessing
+     PRE: numMines < number of possible field locations
+   */
+   public GameBoardPanel(int numRows, int numCols, int numMines, boolean noGuess) {
+      
       assert numRows > 0 && numCols > 0;
       int limit = numRows * numCols; 
-      assert numMines < limit / 3.0;
+      assert numMines < limit;
       
       this.visibleField = new VisibleField(new MineField(numRows, numCols, numMines));
       this.isRandomMineField = true;
+      if (noGuess) {
+         this.noGuessGenerator = new NoGuessGenerator();   // places the mines itself, so no pooled boards
+      }
+      else {
+         BOARD_POOL.register(numRows, numCols, numMines);   // so the first click doesn't have to place the mines
+      }
       
       setUpGUI();
    }
    
+   /**
+      Returns the VisibleField (game data) this GUI reflects, e.g. to add a FieldListener to it.
+      @return the visible field
+    */
+   public VisibleField getVisibleField() {
+      return visibleField;
+   }
+   
    /**
       Create all the elements GUI (i.e., components and listeners) and their organization.
     */
@@ -138,23 +181,16 @@ class GameBoardPanel extends JPanel {
       
       add(top, BorderLayout.NORTH);
       
-      JPanel board = new JPanel();
-          
-      mySquares = new SquareView[visibleField.getMineField().numRows()][visibleField.getMineField().numCols()];
-      
-      GridLayout squareLayout = new GridLayout(mySquares.length, mySquares[0].length);   
-      squareLayout.setHgap(BORDER_THICKNESS);
-      squareLayout.setVgap(BORDER_THICKNESS);
-
-      board.setLayout(squareLayout);
+      boardView = new BoardView();
+      boardView.addMouseListener(new BoardListener());
+      visibleField.addFieldListener(new SquaresUpdater());
       
-      for (int row = 0; row < mySquares.length; row++) {
-         for (int col = 0; col < mySquares[0].length; col++) {
-            mySquares[row][col] = addSquare(row, col, board);
-         }
-      }
+      JScrollPane scrollPane = new JScrollPane(boardView);
+      scrollPane.getHorizontalScrollBar().setUnitIncrement(SQUARE_WIDTH);
+      scrollPane.getVerticalScrollBar().setUnitIncrement(SQUARE_HEIGHT);
+      scrollPane.setBorder(EMPTY_BORDER);
       
-      add(board, BorderLayout.CENTER);
+      add(scrollPane, BorderLayout.CENTER);
    }
    
    
@@ -188,9 +224,8 @@ class GameBoardPanel extends JPanel {
             // doesn't reset the MineField here, just the display, because populateMineField clears old mines
             // before populating it with new ones and for non-random MineField, we use the same minefield in
             // subsequent games.
-            visibleField.resetGameDisplay();
+            visibleField.resetGameDisplay();   // SquaresUpdater repaints all the squares
             userChoseFirstLocation = false;
-            updateAllSquaresViews();
             mineGuessLabel.setText(Integer.toString(visibleField.getMineField().numMines()));
             newGameButton.setIcon(happyIcon);
             gameStatusLabel.setText("");
@@ -230,70 +265,48 @@ class GameBoardPanel extends JPanel {
    }
 
 
-   /**
-      Update all the squares in the GUI based on the current state of the VisibleField.
-    */
-   private void updateAllSquaresViews() {
-      for (int row = 0; row < mySquares.length; row++) {
-         for (int col = 0; col < mySquares[0].length; col++) {
-            mySquares[row][col].updateDisplayProperties();
-         }
-      }   
-   }
-   
-   
-   /**
-      Add the and return the View object for the square at location (row, col), and add it to the board panel.
-    * @param row  row of the square to add
-    * @param col  column of the square to add
-    * @param board  the panel to add it to
-    * @return
-    */
-   private SquareView addSquare(int row, int col, JPanel board) {       
-      SquareView square = new SquareView(row, col);
-      board.add(square); 
-      return square; 
-   }
-   
-   
    //-------------------------------------------------------------------------------------
-   // INNER CLASS SquareListener
-   // the Controller (in MVC) class for a square
-   private class SquareListener extends MouseAdapter {
-      
-      private SquareView mySquare;
-      
-      public SquareListener(SquareView mySquare) {
-         this.mySquare = mySquare;
-      }
+   // INNER CLASS BoardListener
+   // the Controller (in MVC) class for the squares
+   private class BoardListener extends MouseAdapter {
       
       /**
-         Invoked when a mouse button has been pressed in this component.
+         Invoked when a mouse button has been pressed in the board.  Finds the square under the mouse with
+         arithmetic on its coordinates.
        */
       public void mousePressed(MouseEvent e) {
          
          if (visibleField.isGameOver()) return;  // don't respond to clicks if the game is over
          
+         int row = e.getY() / SQUARE_HEIGHT;
+         int col = e.getX() / SQUARE_WIDTH;
+         if (!visibleField.getMineField().inRange(row, col)) return;  // clicked outside the squares
+         
          if (e.getButton() == MouseEvent.BUTTON1) { // left click
-            openSquare();
+            openSquare(row, col);
+         }
+         else if (e.getButton() == MouseEvent.BUTTON2) {  // middle click
+            chordSquare(row, col);
          }
          else if (e.getButton() == MouseEvent.BUTTON3) {  // right click
-            changeGuessStatus();
+            changeGuessStatus(row, col);
          }
       }
       
  
       /**
-         Opens this square.  This in turn may recursively open other squares.  If this square has a mine in it
-         or if the recursion results in opening all the non-mine squares, this action can end the game.  
+         Opens the square at (row, col).  This in turn may open other squares.  If this square has a mine in it
+         or if opening it results in opening all the non-mine squares, this action can end the game.  
          If this is the first square to be opened in a "random" game (ie., isRandomMineField is true), 
-         this will trigger the initial placement of the mines before the recursion (and guarantee that
+         this will trigger the initial placement of the mines before opening it (and guarantee that
          no mine is on this square so a user doesn't lose on the first click).
+         @param row  row of the square
+         @param col  column of the square
        */
-      private void openSquare() {
+      private void openSquare(int row, int col) {
                               // can't open it when it's a mine guess (user has to right click to "?" state first)
-         if ((visibleField.getStatus(mySquare.getRow(), mySquare.getCol()) == VisibleField.MINE_GUESS) ||
-               (visibleField.isUncovered(mySquare.getRow(), mySquare.getCol())))  {   // already has been uncovered
+         if ((visibleField.getStatus(row, col) == VisibleField.MINE_GUESS) ||
+               (visibleField.isUncovered(row, col)))  {   // already has been uncovered
             return;         
          }
          // only choose mine locations once user has opened one square   
@@ -302,13 +315,36 @@ class GameBoardPanel extends JPanel {
          if (!userChoseFirstLocation && isRandomMineField) {  // first time uncovering a square
             userChoseFirstLocation = true;
             // doesn't put a mine in the location they chose
-            visibleField.getMineField().populateMineField(
-                                          mySquare.getRow(), mySquare.getCol());
+            if (noGuessGenerator != null) {
+               noGuessGenerator.populate(visibleField.getMineField(), row, col);
+            }
+            else {
+               BOARD_POOL.populate(visibleField.getMineField(), row, col);
+            }
          }
          
-         // recursively opens up empty areas
-         boolean isNotAMine = visibleField.uncover(mySquare.getRow(), mySquare.getCol());
-
+         // opens up empty areas
+         boolean isNotAMine = visibleField.uncover(row, col);
+         checkGameOver(isNotAMine);
+      }
+      
+      /**
+         Chords on the numbered square at (row, col): if the user has guessed as many mines around it as its
+         number, opens all its other covered neighbors in one go.  See documentation of VisibleField chord() for
+         details.  Like opening a square, this can end the game (if the guesses were wrong, it loses).
+         @param row  row of the square
+         @param col  column of the square
+       */
+      private void chordSquare(int row, int col) {
+         boolean isNotAMine = visibleField.chord(row, col);
+         checkGameOver(isNotAMine);
+      }
+      
+      /**
+         Updates the labels (and shows the mines, after a loss) if the last move ended the game.
+         @param isNotAMine  false iff the last move uncovered a mine
+       */
+      private void checkGameOver(boolean isNotAMine) {
          if (visibleField.isGameOver()) {
             if (isNotAMine) {
                // win condition
@@ -316,151 +352,169 @@ class GameBoardPanel extends JPanel {
                gameStatusLabel.setText("You won!");
             }
             else {  // loss condition
+               visibleField.revealMines();
                newGameButton.setIcon(sadIcon);
                gameStatusLabel.setText("You lost!");
             }
             
          }
-          
-         updateAllSquaresViews();     // don't know which squares changed, so update view for all squares to match 
-                                      // changes in the model
-         repaint();
-           
+         // SquaresUpdater has already asked for the squares that changed in the model to be repainted
       }
       
       /**
          Change the status of a covered (i.e, non-opened) square and the display of the number of mines guessed, if
          appropriate.  See documentation of VisibleField cycleGuess() for details of the states it can go through.
+         @param row  row of the square
+         @param col  column of the square
        */
-      private void changeGuessStatus() {
+      private void changeGuessStatus(int row, int col) {
          // if the square is uncovered, can't do this operation
-         if (visibleField.isUncovered(mySquare.getRow(), mySquare.getCol())) { return; }
+         if (visibleField.isUncovered(row, col)) { return; }
          // update model
-         visibleField.cycleGuess(mySquare.getRow(), mySquare.getCol());
+         visibleField.cycleGuess(row, col);
          // if went to MINE_GUESS or QUESTION, the number of mine guesses changes (either up or down)
-         if (visibleField.getStatus(mySquare.getRow(), mySquare.getCol()) != VisibleField.COVERED) {          
+         if (visibleField.getStatus(row, col) != VisibleField.COVERED) {          
             int minesLeft = visibleField.numMinesLeft();
             int displayNum = (minesLeft >= 0) ? minesLeft : 0; // non-neg
             mineGuessLabel.setText(Integer.toString(displayNum));
          }
-         // get changed state of square from model, and update the View accordingly
-         // (for such an action, only the one square gets changed)
-         mySquare.updateDisplayProperties();
+         // SquaresUpdater gets the changed square repainted from the model
       }
       
    }
-   //------ END OF INNER CLASS SquareListener---------------------------------------------
+   //------ END OF INNER CLASS BoardListener----------------------------------------------
 
    
    //-------------------------------------------------------------------------------------
-   // INNER CLASS SquareView
-   // the View (in MVC) class for a square
-   private class SquareView extends JLabel {
+   // INNER CLASS SquaresUpdater
+   // keeps the View (in MVC) in step with the changes visibleField reports
+   private class SquaresUpdater implements FieldListener {
       
-      // uses a label instead of a button because it makes it easier to process left and right mouse clicks.
-      // (see SquareListener class)
-      // we change the border of the label so it looks like a button that's is or is not pushed in depending
-      // on whether the square has been uncovered 
-      
-      public static final int PREF_SQUARE_WIDTH = 25;
-      public static final int PREF_SQUARE_HEIGHT = 25;
-            
-      private int myRow;
-      private int myCol;
-
+      /**
+         Repaint just the rectangle of squares that changed.  (Swing merges repaint requests for a component
+         into one bounding rectangle anyway, so we ask for that rectangle once.)
+       */
+      public void squaresChanged(VisibleField field, int[] cells, int count) {
+         int numCols = field.getMineField().numCols();
+         int minRow = Integer.MAX_VALUE;
+         int maxRow = -1;
+         int minCol = Integer.MAX_VALUE;
+         int maxCol = -1;
+         for (int i = 0; i < count; i++) {
+            int row = cells[i] / numCols;
+            int col = cells[i] % numCols;
+            minRow = Math.min(minRow, row);
+            maxRow = Math.max(maxRow, row);
+            minCol = Math.min(minCol, col);
+            maxCol = Math.max(maxCol, col);
+         }
+         boardView.repaint(minCol * SQUARE_WIDTH, minRow * SQUARE_HEIGHT, 
+                           (maxCol - minCol + 1) * SQUARE_WIDTH, (maxRow - minRow + 1) * SQUARE_HEIGHT);
+      }
       
       /**
-         Create the View class for a square at the given location.  
-       * @param row the row this square is in
-       * @param col the column this square is in
+         Every square changed, so repaint the whole board.
        */
-      public SquareView(int row, int col) {
-         myRow = row;
-         myCol = col;
-         setBorder(COVERED_BORDER);
-         setPreferredSize(new Dimension(PREF_SQUARE_WIDTH, PREF_SQUARE_HEIGHT));
-         setHorizontalAlignment(SwingConstants.CENTER);
-         setFont(DEFAULT_FONT);
-         updateDisplayProperties();
-         addMouseListener(new SquareListener(this));
+      public void fieldReset(VisibleField field) {
+         boardView.repaint();
       }
+   }
+   //------ END OF INNER CLASS SquaresUpdater---------------------------------------------
+
+   
+   //-------------------------------------------------------------------------------------
+   // INNER CLASS BoardView
+   // the View (in MVC) class for the squares
+   private class BoardView extends JComponent {
       
+      // paints the squares straight from visibleField instead of having a component per square.
+      // each square gets a bevel border that makes it look like a button that is or is not pushed in depending
+      // on whether the square has been uncovered 
       
       /**
-         Get the row this square is in
-         @return the row
+         Create the View for the squares of visibleField.
        */
-      public int getRow() { return myRow; }
+      public BoardView() {
+         MineField mineField = visibleField.getMineField();
+         setPreferredSize(new Dimension(mineField.numCols() * SQUARE_WIDTH, mineField.numRows() * SQUARE_HEIGHT));
+      }
       
       
       /**
-         Get the column this square is in
-         @return the column
-      */
-      public int getCol() { return myCol; }
+         Paint the squares that overlap the area being painted (never more than the visible part of the board).
+       */
+      protected void paintComponent(Graphics g) {
+         Rectangle clip = g.getClipBounds();
+         if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+         }
+         MineField mineField = visibleField.getMineField();
+         int firstRow = Math.max(clip.y / SQUARE_HEIGHT, 0);
+         int lastRow = Math.min((clip.y + clip.height - 1) / SQUARE_HEIGHT, mineField.numRows() - 1);
+         int firstCol = Math.max(clip.x / SQUARE_WIDTH, 0);
+         int lastCol = Math.min((clip.x + clip.width - 1) / SQUARE_WIDTH, mineField.numCols() - 1);
+         for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+               paintSquare(g, row, col);
+            }
+         }
+      }
       
       
       /**
-        Update square view based on status of corresponding square in model
+        Paint one square based on status of corresponding square in model
+        @param g  the graphics to paint with
+        @param row  row of the square
+        @param col  column of the square
        */
-      public void updateDisplayProperties() {
-         int status = visibleField.getStatus(myRow, myCol);
-         
-         setSquareBorder();  // REFACTORED 10/10
+      private void paintSquare(Graphics g, int row, int col) {
+         int status = visibleField.getStatus(row, col);
+         int x = col * SQUARE_WIDTH;
+         int y = row * SQUARE_HEIGHT;
          
-         if (status == VisibleField.COVERED) {
-            setBackground(null);
-            setFont(DEFAULT_FONT);
-            setText("");
-         }
-         else if (status == 0) {    // no neighboring mines (empty square)
-            setText("");
-         }
-         else if (status == VisibleField.MINE_GUESS) {
-            setOpaque(true);
-            setBackground(MINE_GUESS_COLOR);
-            setText("");  // FIXED BUG 10/10
+         Color background = getBackground();
+         String text = "";
+         Font font = DEFAULT_FONT;
+         if (status == VisibleField.MINE_GUESS) {
+            background = MINE_GUESS_COLOR;
          }
          else if (status == VisibleField.QUESTION) {
-            setBackground(null);
-            setText("?");
+            text = "?";
          }
          else if (status == VisibleField.MINE) {
-            setOpaque(true);
-            setBackground(MINE_COLOR);
-            setText("");  // FIXED BUG 10/10
+            background = MINE_COLOR;
          }
          else if (status == VisibleField.INCORRECT_GUESS) {            
-            setFont(INCORRECT_GUESS_FONT);
-            setText("X");
-
+            font = INCORRECT_GUESS_FONT;
+            text = "X";
          }
          else if (status == VisibleField.EXPLODED_MINE) {
-            setOpaque(true);
-            setBackground(EXPLODED_MINE_COLOR);
-            setText("");  // FIXED BUG 10/10
+            background = EXPLODED_MINE_COLOR;
          }
          else if (status > 0) {  // status is the number of neighboring mines
-            setText(Integer.toString(status));
+            text = Integer.toString(status);
          }
-         else {
+         else if (status != VisibleField.COVERED && status != 0) {  // 0 is an empty square: no text
             throw new AssertionError(status);
          }
-      }
-      
-      
-      /**
-         Set the border to show whether it was already clicked.
-       */
-      private void setSquareBorder() {
-         if (visibleField.isUncovered(myRow, myCol)) {  
-            setBorder(UNCOVERED_BORDER);  
-         }
-         else {
-            setBorder(COVERED_BORDER);   
+         
+         g.setColor(background);
+         g.fillRect(x, y, SQUARE_WIDTH, SQUARE_HEIGHT);
+         
+         // Set the border to show whether it was already clicked.
+         Border border = visibleField.isUncovered(row, col) ? UNCOVERED_BORDER : COVERED_BORDER;
+         border.paintBorder(this, g, x, y, SQUARE_WIDTH, SQUARE_HEIGHT);
+         
+         if (!text.isEmpty()) {
+            g.setFont(font);
+            g.setColor(getForeground());
+            FontMetrics metrics = g.getFontMetrics();
+            int textX = x + (SQUARE_WIDTH - metrics.stringWidth(text)) / 2;
+            int textY = y + (SQUARE_HEIGHT - metrics.getHeight()) / 2 + metrics.getAscent();
+            g.drawString(text, textX, textY);
          }
       }
    }
-   //-----------------------------END OF INNER CLASS SquareView --------------------------
+   //-----------------------------END OF INNER CLASS BoardView ---------------------------
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,366 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * GameServer class Plays games over HTTP, without Swing, so they can be driven
+ * by bots and load generators. Games are hosted by a GameSessionManager, and
+ * every request is handled on its own thread from the server's own executor
+ * (made like the manager's, so a virtual thread where the JVM has them), which
+ * just waits while its session runs the move.
+ *
+ * Requests are GETs with the parameters in the query string:
+ *
+ * <pre>
+ * /new?rows=R&amp;cols=C&amp;mines=M   starts a game: the session id (varint)
+ * /uncover?id=I&amp;row=R&amp;col=C    uncovers a square: a delta (see below)
+ * /guess?id=I&amp;row=R&amp;col=C      cycles the guess on a square: a delta
+ * /state?id=I                    the whole game: rows, cols (varints), then a
+ *                                delta header, then the status of every square
+ *                                as a nibble (see VisibleField.packStatuses)
+ * /close?id=I                    ends the game: a delta header of how it ended
+ * </pre>
+ *
+ * Responses are application/octet-stream. A delta is the flags byte (UNCOVERED_A_MINE,
+ * GAME_OVER), the number of mines left (a zigzag varint, since it may be
+ * negative), the number of squares changed by the move (a varint), then for each
+ * square in row-major order the gap from the previous one's index (a varint, from
+ * -1 for the first) and its new status (a byte). So an uncover that opens a
+ * region of a few hundred squares takes a few hundred bytes, where the whole
+ * board would be rows * cols. Bad parameters get 400, an unknown session 404,
+ * and a game that doesn't fit in the memory budget 503, all with an empty body.
+ * Every 200 response has a body, since the JDK's server closes the connection
+ * after an empty one, and load generators keep theirs alive.
+ *
+ * To run it from the command line: java GameServer [port]. It only listens on
+ * the loopback address. GameServerLoadGenerator drives it.
+ */
+public class GameServer {
+
+   public static final int DEFAULT_PORT = 8086;
+   public static final int UNCOVERED_A_MINE = 1; // delta flags
+   public static final int GAME_OVER = 2;
+
+   private static final long DEFAULT_MEMORY_BUDGET = 256L << 20;
+   private static final long DEFAULT_IDLE_MILLIS = 10 * 60 * 1000;
+   private static final int MAX_SQUARES = 1 << 24;
+
+   static {
+      // the JDK's server writes a response's headers and body separately, and without
+      // TCP_NODELAY the body waits for the client's delayed ACK of the headers (tens
+      // of ms); read when the first HttpServer is created, so it must be set before
+      System.getProperties().putIfAbsent("sun.net.httpserver.nodelay", "true");
+   }
+
+   private final GameSessionManager sessions;
+   private final HttpServer server;
+   private final ExecutorService executor;
+
+   public static void main(String[] args) throws IOException {
+      int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+      GameServer server = new GameServer(port, new GameSessionManager(DEFAULT_MEMORY_BUDGET, DEFAULT_IDLE_MILLIS));
+      server.start();
+      System.out.println("listening on " + server.getAddress());
+   }
+
+   /**
+    * Create a server on the loopback address. It doesn't accept requests until
+    * started.
+    *
+    * @param port     port to listen on, or 0 for any free one
+    * @param sessions the manager hosting the games
+    * @throws IOException if the port can't be listened on
+    */
+   public GameServer(int port, GameSessionManager sessions) throws IOException {
+      this.sessions = sessions;
+      this.executor = GameSessionManager.newSharedExecutor();
+      server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+      server.setExecutor(executor);
+      server.createContext("/", this::handle);
+   }
+
+   /**
+    * Starts accepting requests, in the background.
+    */
+   public void start() {
+      server.start();
+   }
+
+   /**
+    * Stops accepting requests, and stops the session manager.
+    */
+   public void stop() {
+      server.stop(0);
+      executor.shutdown();
+      sessions.shutdown();
+   }
+
+   /**
+    * Returns the address the server listens on, e.g. to find the port when it
+    * was created with port 0.
+    *
+    * @return the address
+    */
+   public InetSocketAddress getAddress() {
+      return server.getAddress();
+   }
+
+   // <put private methods here>
+   /**
+    * Handles a request, on its own thread.
+    *
+    * @param exchange the request and its response
+    * @throws IOException if the response can't be sent
+    */
+   private void handle(HttpExchange exchange) throws IOException {
+      int status = 200;
+      ByteBuffer body = null;
+      try {
+         String query = exchange.getRequestURI().getRawQuery();
+         switch (exchange.getRequestURI().getPath()) {
+            case "/new":
+               body = newGame(query);
+               break;
+            case "/uncover":
+               body = move(query, true);
+               break;
+            case "/guess":
+               body = move(query, false);
+               break;
+            case "/state":
+               body = state(query);
+               break;
+            case "/close":
+               body = close(query);
+               break;
+            default:
+               break;
+         }
+         if (body == null) {
+            status = 404; // no such session (or path)
+         }
+      }
+      catch (IllegalArgumentException e) {
+         status = 400;
+      }
+      catch (IllegalStateException e) {
+         status = 503;
+      }
+      catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         status = 503;
+      }
+      catch (ExecutionException e) {
+         status = (e.getCause() instanceof IllegalArgumentException) ? 400 : 500;
+      }
+      catch (RuntimeException e) {
+         status = 500; // e.g. the session manager rejected the move after stop()
+      }
+      exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+      if (status != 200) {
+         body = ByteBuffer.allocate(0);
+      }
+      exchange.sendResponseHeaders(status, (body.remaining() == 0) ? -1 : body.remaining());
+      try (OutputStream out = exchange.getResponseBody()) {
+         out.write(body.array(), body.position(), body.remaining());
+      }
+   }
+
+   /**
+    * Starts a game.
+    *
+    * @param query the request's parameters: rows, cols and mines
+    * @return the response: the session id
+    */
+   private ByteBuffer newGame(String query) {
+      long numRows = parameter(query, "rows");
+      long numCols = parameter(query, "cols");
+      long numMines = parameter(query, "mines");
+      if (numRows <= 0 || numCols <= 0 || numRows > MAX_SQUARES || numCols > MAX_SQUARES
+            || numRows * numCols > MAX_SQUARES || numMines < 0 || numMines >= numRows * numCols) {
+         throw new IllegalArgumentException("bad game size");
+      }
+      GameSessionManager.Session session = sessions.newGame((int) numRows, (int) numCols, (int) numMines);
+      ByteBuffer response = ByteBuffer.allocate(10);
+      ReplayWriter.putVarint(response, session.getId());
+      return response.flip();
+   }
+
+   /**
+    * Makes a move on a square, and returns its delta.
+    *
+    * @param query   the request's parameters: id, row and col
+    * @param uncover whether to uncover the square, otherwise cycle its guess
+    * @return the response, or null if there's no such session
+    */
+   private ByteBuffer move(String query, boolean uncover) throws InterruptedException, ExecutionException {
+      GameSessionManager.Session session = sessions.getSession(parameter(query, "id"));
+      long row = parameter(query, "row");
+      long col = parameter(query, "col");
+      if (session == null) {
+         return null;
+      }
+      return session.submit(field -> {
+         if (row != (int) row || col != (int) col || !field.getMineField().inRange((int) row, (int) col)) {
+            throw new IllegalArgumentException("square out of range");
+         }
+         DeltaRecorder recorder = new DeltaRecorder();
+         field.addFieldListener(recorder);
+         try {
+            boolean isNotAMine = true;
+            if (uncover) {
+               session.placeMinesAvoiding((int) row, (int) col);
+               isNotAMine = field.uncover((int) row, (int) col);
+            }
+            else {
+               field.cycleGuess((int) row, (int) col);
+            }
+            return recorder.encode(field, isNotAMine);
+         }
+         finally {
+            field.removeFieldListener(recorder);
+         }
+      }).get();
+   }
+
+   /**
+    * Returns the whole state of a game.
+    *
+    * @param query the request's parameters: id
+    * @return the response, or null if there's no such session
+    */
+   private ByteBuffer state(String query) throws InterruptedException, ExecutionException {
+      GameSessionManager.Session session = sessions.getSession(parameter(query, "id"));
+      if (session == null) {
+         return null;
+      }
+      return session.submit(field -> {
+         MineField mineField = field.getMineField();
+         long squares = (long) mineField.numRows() * mineField.numCols();
+         ByteBuffer response = ByteBuffer.allocate((int) (4 * 10 + 1 + (squares + 1) / 2))
+               .order(ByteOrder.LITTLE_ENDIAN); // as packStatuses expects
+         ReplayWriter.putVarint(response, mineField.numRows());
+         ReplayWriter.putVarint(response, mineField.numCols());
+         putHeader(response, field, false, 0);
+         field.packStatuses(response);
+         return response.flip();
+      }).get();
+   }
+
+   /**
+    * Ends a game.
+    *
+    * @param query the request's parameters: id
+    * @return the response, or null if there's no such session
+    */
+   private ByteBuffer close(String query) throws InterruptedException, ExecutionException {
+      long id = parameter(query, "id");
+      GameSessionManager.Session session = sessions.getSession(id);
+      if (session == null) {
+         return null;
+      }
+      ByteBuffer response = session.submit(field -> {
+         ByteBuffer header = ByteBuffer.allocate(3 * 10 + 1);
+         putHeader(header, field, false, 0);
+         return header.flip();
+      }).get();
+      return sessions.closeSession(id) ? response : null;
+   }
+
+   /**
+    * Adds the start of a delta: the flags, the number of mines left, and the
+    * number of squares.
+    *
+    * @param response   where to put it
+    * @param field      the game
+    * @param hitAMine   whether the move uncovered a mine
+    * @param numSquares number of squares that follow
+    */
+   private static void putHeader(ByteBuffer response, VisibleField field, boolean hitAMine, int numSquares) {
+      response.put((byte) ((hitAMine ? UNCOVERED_A_MINE : 0) | (field.isGameOver() ? GAME_OVER : 0)));
+      int minesLeft = field.numMinesLeft();
+      ReplayWriter.putVarint(response, (minesLeft << 1) ^ (minesLeft >> 31));
+      ReplayWriter.putVarint(response, numSquares);
+   }
+
+   /**
+    * Returns the value of a numeric parameter of a query string.
+    *
+    * @param query the query string, e.g. "id=3&amp;row=0" (may be null)
+    * @param name  the parameter's name
+    * @return its value
+    * @throws IllegalArgumentException if it's missing or not a number
+    */
+   private static long parameter(String query, String name) {
+      if (query != null) {
+         for (int start = 0; start < query.length(); ) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+               end = query.length();
+            }
+            int equals = start + name.length();
+            if (equals < end && query.charAt(equals) == '=' && query.startsWith(name, start)) {
+               return Long.parseLong(query, equals + 1, end, 10);
+            }
+            start = end + 1;
+         }
+      }
+      throw new IllegalArgumentException("missing parameter " + name);
+   }
+
+   //-------------------------------------------------------------------------------------
+   // INNER CLASS DeltaRecorder
+   // listens to a field during one move, and encodes the squares it changed
+   private static class DeltaRecorder implements FieldListener {
+
+      private final IntBuffer cells = new IntBuffer();
+
+      public void squaresChanged(VisibleField field, int[] changed, int count) {
+         for (int i = 0; i < count; i++) {
+            cells.add(changed[i]);
+         }
+      }
+
+      public void fieldReset(VisibleField field) {
+      }
+
+      /**
+       * Returns the delta of the squares changed so far.
+       *
+       * @param field      the game
+       * @param isNotAMine the result of the move
+       * @return the delta
+       */
+      ByteBuffer encode(VisibleField field, boolean isNotAMine) {
+         int[] sorted = Arrays.copyOf(cells.array(), cells.size());
+         Arrays.sort(sorted);
+         int count = 0;
+         for (int i = 0; i < sorted.length; i++) { // a square may change more than once in a move
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+               sorted[count++] = sorted[i];
+            }
+         }
+         ByteBuffer response = ByteBuffer.allocate(3 * 10 + 1 + count * 6);
+         putHeader(response, field, !isNotAMine, count);
+         int numCols = field.getMineField().numCols();
+         int previous = -1;
+         for (int i = 0; i < count; i++) {
+            int cell = sorted[i];
+            ReplayWriter.putVarint(response, cell - previous);
+            response.put((byte) field.getStatus(cell / numCols, cell % numCols));
+            previous = cell;
+         }
+         return response.flip();
+      }
+   }
+   //------ END OF INNER CLASS DeltaRecorder----------------------------------------------
+
+}
@@ -0,0 +1,181 @@
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * GameServerLoadGenerator class Drives a GameServer as hard as it can, to
+ * measure how many requests a second it handles. Each connection is a thread
+ * playing games one after another over a kept-alive HTTP/1.1 connection:
+ * starting a game, then uncovering and guessing random squares until the game
+ * is over. The requests are written and the responses parsed by hand, so the
+ * generator itself costs little next to the server.
+ *
+ * To run it from the command line: java GameServerLoadGenerator [port
+ * [connections [seconds]]], against a server started with java GameServer
+ * [port]. With no port it starts a server of its own, in the same JVM.
+ */
+public class GameServerLoadGenerator {
+
+   private static final int NUM_ROWS = 16; // intermediate games
+   private static final int NUM_COLS = 16;
+   private static final int NUM_MINES = 40;
+
+   public static void main(String[] args) throws Exception {
+      GameServer server = null;
+      int port;
+      if (args.length > 0) {
+         port = Integer.parseInt(args[0]);
+      }
+      else {
+         server = new GameServer(0, new GameSessionManager(256L << 20, 60_000));
+         server.start();
+         port = server.getAddress().getPort();
+      }
+      int connections = (args.length > 1) ? Integer.parseInt(args[1]) : 64;
+      int seconds = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+      long requests = run(port, connections, seconds * 1000L);
+      System.out.printf("%d requests over %d connections in %d sec: %.0f requests/sec%n", requests, connections,
+            seconds, requests / (double) seconds);
+      if (server != null) {
+         server.stop();
+      }
+   }
+
+   /**
+    * Sends requests to a server on the loopback address for a while.
+    *
+    * @param port        the server's port
+    * @param connections number of connections sending requests at once
+    * @param millis      how long to send them for
+    * @return number of requests that got a response
+    * @throws InterruptedException if interrupted while waiting for the
+    *                              connections to finish
+    */
+   public static long run(int port, int connections, long millis) throws InterruptedException {
+      LongAdder requests = new LongAdder();
+      long deadline = System.nanoTime() + millis * 1_000_000;
+      Thread[] threads = new Thread[connections];
+      for (int i = 0; i < connections; i++) {
+         long seed = i;
+         threads[i] = new Thread(() -> play(port, deadline, seed, requests), "load " + i);
+         threads[i].start();
+      }
+      for (Thread thread : threads) {
+         thread.join();
+      }
+      return requests.sum();
+   }
+
+   // <put private methods here>
+   /**
+    * Body of a connection's thread: plays games until the deadline.
+    *
+    * @param port     the server's port
+    * @param deadline System.nanoTime() to stop at
+    * @param seed     seed for the squares picked
+    * @param requests where to count the requests answered
+    */
+   private static void play(int port, long deadline, long seed, LongAdder requests) {
+      SplittableRandom random = new SplittableRandom(seed);
+      byte[] body = new byte[64 * 1024];
+      try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+         socket.setTcpNoDelay(true);
+         OutputStream out = socket.getOutputStream();
+         InputStream in = new BufferedInputStream(socket.getInputStream());
+         while (System.nanoTime() - deadline < 0) {
+            send(out, "/new?rows=" + NUM_ROWS + "&cols=" + NUM_COLS + "&mines=" + NUM_MINES);
+            int length = receive(in, body);
+            requests.increment();
+            long id = 0;
+            for (int i = 0, shift = 0; i < length; i++, shift += 7) {
+               id |= (body[i] & 0x7fL) << shift;
+            }
+            boolean over = false;
+            while (!over && System.nanoTime() - deadline < 0) {
+               int row = random.nextInt(NUM_ROWS);
+               int col = random.nextInt(NUM_COLS);
+               boolean guess = random.nextInt(8) == 0;
+               send(out, (guess ? "/guess?id=" : "/uncover?id=") + id + "&row=" + row + "&col=" + col);
+               length = receive(in, body);
+               requests.increment();
+               over = length > 0 && (body[0] & GameServer.GAME_OVER) != 0;
+            }
+            send(out, "/close?id=" + id);
+            receive(in, body);
+            requests.increment();
+         }
+      }
+      catch (IOException e) {
+         System.err.println("connection failed: " + e);
+      }
+   }
+
+   /**
+    * Sends a GET request.
+    *
+    * @param out    the connection
+    * @param target the path and query
+    * @throws IOException if it can't be sent
+    */
+   private static void send(OutputStream out, String target) throws IOException {
+      out.write(("GET " + target + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+   }
+
+   /**
+    * Reads a response, and its body.
+    *
+    * @param in   the connection
+    * @param body where to put the body, big enough for it
+    * @return the length of the body
+    * @throws IOException if it can't be read, or isn't a 200 response
+    */
+   private static int receive(InputStream in, byte[] body) throws IOException {
+      String statusLine = readLine(in);
+      if (!statusLine.startsWith("HTTP/1.1 200")) {
+         throw new IOException("unexpected response: " + statusLine);
+      }
+      int length = 0;
+      for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+         if (line.regionMatches(true, 0, "Content-length:", 0, 15)) {
+            length = Integer.parseInt(line.substring(15).trim());
+         }
+      }
+      for (int read = 0; read < length; ) {
+         int n = in.read(body, read, length - read);
+         if (n < 0) {
+            throw new EOFException();
+         }
+         read += n;
+      }
+      return length;
+   }
+
+   /**
+    * Reads a line of a response's headers.
+    *
+    * @param in the connection
+    * @return the line, without the CRLF
+    * @throws IOException if it can't be read
+    */
+   private static String readLine(InputStream in) throws IOException {
+      StringBuilder line = new StringBuilder();
+      for (int b = in.read(); b != '\n'; b = in.read()) {
+         if (b < 0) {
+            throw new EOFException();
+         }
+         if (b != '\r') {
+            line.append((char) b);
+         }
+      }
+      return line.toString();
+   }
+
+}
@@ -0,0 +1,402 @@
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * GameSessionManager class Hosts many independent games at once, e.g. for a
+ * server. Each game is a Session with its own MineField and VisibleField.
+ *
+ * VisibleField and MineField aren't thread-safe, and don't need to be: each
+ * session runs the operations on its game one at a time, in the order they were
+ * submitted, as tasks on a shared executor (virtual threads where the JVM has
+ * them, otherwise a work-stealing pool with a thread per core). A session is a
+ * serial executor built from a lock-free queue and an atomic counter, so there
+ * are no locks at all: different sessions run in parallel on all the cores, and
+ * the operations of one session never contend with anything but each other.
+ *
+ * Sessions that haven't been used for a while are evicted, and the total memory
+ * of the games hosted is kept under a budget: starting a game that would go over
+ * it first evicts the least recently used sessions, and fails if that's not
+ * enough. The sessions are kept in order of use in a concurrent skip list, keyed
+ * by a sequence number each use takes, so finding the least recently used one
+ * takes logarithmic time, not a scan of every session.
+ */
+public class GameSessionManager {
+
+   private static final long SESSION_OVERHEAD_BYTES = 1024; // objects, buffers etc. of an empty game
+
+   private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+   private final AtomicLong nextId = new AtomicLong(1);
+   private final AtomicLong usedBytes = new AtomicLong();
+   private final AtomicLong nextUse = new AtomicLong(); // sequence number of each use of a session
+   private final ConcurrentSkipListMap<Long, Session> byUse = new ConcurrentSkipListMap<>(); // last use of
+                                                                                             // each session
+   private final long memoryBudget;
+   private final long idleNanos;
+   private final ExecutorService executor;
+   private final ScheduledExecutorService evictor;
+
+   /**
+    * Create a manager.
+    *
+    * @param memoryBudget most bytes the hosted games may take up in all
+    * @param idleMillis   how long a session may go unused before it's evicted
+    */
+   public GameSessionManager(long memoryBudget, long idleMillis) {
+      this.memoryBudget = memoryBudget;
+      this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+      this.executor = newSharedExecutor();
+      this.evictor = Executors.newSingleThreadScheduledExecutor(task -> {
+         Thread thread = new Thread(task, "session evictor");
+         thread.setDaemon(true);
+         return thread;
+      });
+      long period = Math.max(idleMillis / 2, 1);
+      evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Starts a new game. Its mines are placed when its first square is uncovered,
+    * so the first square is never a mine.
+    *
+    * @param numRows  number of rows, must be positive
+    * @param numCols  number of columns, must be positive
+    * @param numMines number of mines, PRE: 0 <= numMines < numRows * numCols
+    * @return the session of the game
+    * @throws IllegalStateException if the game doesn't fit in the memory budget,
+    *                               even with no other sessions
+    */
+   public Session newGame(int numRows, int numCols, int numMines) {
+      long bytes = estimateBytes(numRows, numCols);
+      if (bytes > memoryBudget) { // no point evicting anything
+         throw new IllegalStateException("memory budget exceeded: " + bytes + " > " + memoryBudget);
+      }
+      while (true) {
+         long used = usedBytes.get();
+         if (used + bytes <= memoryBudget) {
+            if (usedBytes.compareAndSet(used, used + bytes)) {
+               break;
+            }
+         }
+         else if (!evictLeastRecentlyUsed()) {
+            throw new IllegalStateException("memory budget exceeded: " + (used + bytes) + " > " + memoryBudget);
+         }
+      }
+      Session session = new Session(nextId.getAndIncrement(), numRows, numCols, numMines, bytes);
+      sessions.put(session.id, session);
+      session.touch();
+      return session;
+   }
+
+   /**
+    * Returns the session with the given id, or null if there isn't one (it
+    * never existed, or was closed or evicted).
+    *
+    * @param id the session's id
+    * @return the session, or null
+    */
+   public Session getSession(long id) {
+      Session session = sessions.get(id);
+      if (session != null) {
+         session.touch();
+      }
+      return session;
+   }
+
+   /**
+    * Ends a session. Operations already submitted to it still run.
+    *
+    * @param id the session's id
+    * @return whether there was such a session
+    */
+   public boolean closeSession(long id) {
+      Session session = sessions.remove(id);
+      if (session == null) {
+         return false;
+      }
+      byUse.remove(session.lastUse.get(), session);
+      usedBytes.addAndGet(-session.bytes);
+      return true;
+   }
+
+   /**
+    * Evicts every session that hasn't been used for longer than the idle time.
+    * Done periodically in the background, but can be called at any time.
+    *
+    * @return number of sessions evicted
+    */
+   public int evictIdle() {
+      long now = System.nanoTime();
+      int evicted = 0;
+      for (Session session : sessions.values()) {
+         if (now - session.lastUsed > idleNanos && closeSession(session.id)) {
+            evicted++;
+         }
+      }
+      return evicted;
+   }
+
+   /**
+    * Returns the number of sessions.
+    *
+    * @return number of sessions
+    */
+   public int numSessions() {
+      return sessions.size();
+   }
+
+   /**
+    * Returns the memory taken up by the games hosted, as estimated for the
+    * memory budget.
+    *
+    * @return number of bytes
+    */
+   public long usedBytes() {
+      return usedBytes.get();
+   }
+
+   /**
+    * Stops the background threads. Operations already submitted still run, but
+    * no more can be.
+    */
+   public void shutdown() {
+      evictor.shutdownNow();
+      executor.shutdown();
+   }
+
+   // <put private methods here>
+   /**
+    * Evicts the least recently used session. Entries of byUse that aren't the
+    * last use of a hosted session (left by a touch racing a close) are dropped
+    * on the way.
+    *
+    * @return whether there was one to evict
+    */
+   private boolean evictLeastRecentlyUsed() {
+      while (true) {
+         Map.Entry<Long, Session> oldest = byUse.pollFirstEntry();
+         if (oldest == null) {
+            return false;
+         }
+         Session session = oldest.getValue();
+         if (session.lastUse.get() == oldest.getKey() && sessions.get(session.id) == session) {
+            closeSession(session.id); // may have just been closed by someone else, which frees the memory as well
+            return true;
+         }
+      }
+   }
+
+   /**
+    * Returns an estimate of the memory a game of the given size takes up: a byte
+    * per square of VisibleField status, a bit per square (rows padded to whole
+    * longs) of MineField mines, and some overhead. Sessions never have undo
+    * history or labeled openings (see Session), which would take more.
+    *
+    * @param numRows number of rows
+    * @param numCols number of columns
+    * @return number of bytes
+    */
+   private static long estimateBytes(int numRows, int numCols) {
+      long squares = (long) numRows * numCols;
+      long mineWords = (long) numRows * ((numCols + 63) >>> 6);
+      return squares + mineWords * 8 + SESSION_OVERHEAD_BYTES;
+   }
+
+   /**
+    * Returns the executor sessions run their operations on: a new virtual thread
+    * per task if the JVM has virtual threads (Java 21 and later, looked up by
+    * reflection so this still compiles and runs on older ones), otherwise a
+    * work-stealing pool with a thread per core.
+    *
+    * @return the executor
+    */
+   static ExecutorService newSharedExecutor() {
+      try {
+         return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      }
+      catch (ReflectiveOperationException e) {
+         return Executors.newWorkStealingPool();
+      }
+   }
+
+   //-------------------------------------------------------------------------------------
+   // INNER CLASS Session
+   // one hosted game, which runs the operations on it one at a time
+   public class Session {
+
+      private final long id;
+      private final long bytes;
+      private final MineField mineField;
+      private final VisibleField field;
+      private boolean minesPlaced; // only touched by the session's own tasks
+      private volatile long lastUsed = System.nanoTime();
+      private final AtomicLong lastUse = new AtomicLong(-1); // key of the session in byUse
+
+      private final ConcurrentLinkedQueue<Operation<?>> tasks = new ConcurrentLinkedQueue<>();
+      private final AtomicInteger pending = new AtomicInteger(); // tasks submitted but not yet run
+
+      private Session(long id, int numRows, int numCols, int numMines, long bytes) {
+         this.id = id;
+         this.bytes = bytes;
+         this.mineField = new MineField(numRows, numCols, numMines);
+         this.field = new VisibleField(mineField);
+         field.setBulkOpenEnabled(false); // the labels of the openings would grow outside the memory budget, as
+                                          // undo history would (it's off by default)
+      }
+
+      /**
+       * Returns the session's id, to find it again with getSession.
+       *
+       * @return the id
+       */
+      public long getId() {
+         return id;
+      }
+
+      /**
+       * Runs an operation on the game, after every operation submitted before it
+       * has run. The operation may use the field (and its MineField) freely, but
+       * mustn't keep them, since nothing else is safe. After shutdown, the result
+       * fails with a RejectedExecutionException (and so do any other operations
+       * that were waiting to be started along with it).
+       *
+       * @param operation the operation
+       * @param <T>       the type of its result
+       * @return its result, when it has run
+       */
+      public <T> CompletableFuture<T> submit(Function<VisibleField, T> operation) {
+         touch();
+         Operation<T> task = new Operation<>(operation);
+         tasks.add(task);
+         if (pending.getAndIncrement() == 0) { // nothing running, so start draining
+            try {
+               executor.execute(this::drain);
+            }
+            catch (RejectedExecutionException e) { // shut down: fail what would have been drained instead
+               do {
+                  tasks.poll().fail(e);
+               } while (pending.decrementAndGet() > 0);
+            }
+         }
+         return task.result;
+      }
+
+      /**
+       * Uncovers a square, placing the mines first if it's the first square
+       * uncovered. See VisibleField.uncover.
+       *
+       * @param row row of the square
+       * @param col column of the square
+       * @return false iff a mine was uncovered, when it has run
+       */
+      public CompletableFuture<Boolean> uncover(int row, int col) {
+         return submit(visible -> {
+            placeMinesAvoiding(row, col);
+            return visible.uncover(row, col);
+         });
+      }
+
+      /**
+       * Places the mines, if they haven't been placed yet, with none at (row,
+       * col). Operations that uncover squares call this first, so the first
+       * square uncovered is never a mine. Must only be called from an operation
+       * running on this session (see submit).
+       *
+       * @param row row of the square to keep clear
+       * @param col column of the square to keep clear
+       */
+      public void placeMinesAvoiding(int row, int col) {
+         if (!minesPlaced) {
+            mineField.populateMineField(row, col);
+            minesPlaced = true;
+         }
+      }
+
+      /**
+       * Cycles the guess on a square. See VisibleField.cycleGuess.
+       *
+       * @param row row of the square
+       * @param col column of the square
+       * @return the new status of the square, when it has run
+       */
+      public CompletableFuture<Integer> cycleGuess(int row, int col) {
+         return submit(visible -> {
+            visible.cycleGuess(row, col);
+            return visible.getStatus(row, col);
+         });
+      }
+
+      /**
+       * Runs the submitted tasks, one at a time, until there are none left. Only
+       * one drain runs at once: it's started by the submit that finds nothing
+       * pending, and keeps going while more are submitted.
+       */
+      private void drain() {
+         do {
+            tasks.poll().run(field);
+         } while (pending.decrementAndGet() > 0);
+      }
+
+      /**
+       * Notes that the session was just used, so it isn't evicted, and moves it
+       * to the most recently used end of byUse.
+       */
+      private void touch() {
+         lastUsed = System.nanoTime();
+         long use = nextUse.incrementAndGet();
+         byUse.put(use, this);
+         byUse.remove(lastUse.getAndSet(use), this); // put before it's swapped in, so racing touches leave nothing
+                                                     // behind; one racing closeSession may, see evict
+      }
+   }
+   //------ END OF INNER CLASS Session----------------------------------------------
+
+   //-------------------------------------------------------------------------------------
+   // INNER CLASS Operation
+   // an operation submitted to a session, and its result
+   private static class Operation<T> {
+
+      private final Function<VisibleField, T> operation;
+      private final CompletableFuture<T> result = new CompletableFuture<>();
+
+      private Operation(Function<VisibleField, T> operation) {
+         this.operation = operation;
+      }
+
+      /**
+       * Runs the operation on a field, completing the result with what it
+       * returns or throws.
+       *
+       * @param field the session's field
+       */
+      private void run(VisibleField field) {
+         try {
+            result.complete(operation.apply(field));
+         }
+         catch (Throwable t) {
+            result.completeExceptionally(t);
+         }
+      }
+
+      /**
+       * Fails the operation without running it.
+       *
+       * @param cause why it can't run
+       */
+      private void fail(Throwable cause) {
+         result.completeExceptionally(cause);
+      }
+   }
+   //------ END OF INNER CLASS Operation----------------------------------------------
+
+}
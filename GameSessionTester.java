@@ -0,0 +1,184 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class GameSessionTester{
+
+   private static void Assert(long expected, long actual, String name){
+      System.out.printf("%s - expected: %d actual: %d -- %s\n",name,expected,actual,(expected == actual ? "PASSED" : "FAILED"));
+   }
+   private static void AssertTrue(boolean actual, String name){
+      System.out.printf("%s - expected: true actual: %b -- %s\n",name,actual,(actual ? "PASSED" : "FAILED"));
+   }
+   
+   private static void AssertFalse(boolean actual, String name){
+      System.out.printf("%s - expected: false actual: %b -- %s\n",name,actual,(!actual ? "PASSED" : "FAILED"));
+   }
+   
+   private static void testSerialOperations() throws Exception{
+      System.out.println("Testing Serial Operations");
+      GameSessionManager manager = new GameSessionManager(1 << 20, 60000);
+      GameSessionManager.Session session = manager.newGame(9,9,10);
+      AssertTrue(session.uncover(4,4).get(), "First uncover is never a mine");
+      int covered = session.submit(field -> {   // a square the uncover didn't open
+         int square = 0;
+         while(field.isUncovered(square / 9, square % 9)){
+            square++;
+         }
+         return square;
+      }).get();
+      List<CompletableFuture<Integer>> guesses = new ArrayList<>();
+      for(int i = 0;i<3000;i++){
+         guesses.add(session.cycleGuess(covered / 9, covered % 9));   // run in the order submitted
+      }
+      int outOfOrder = 0;
+      int[] cycle = { VisibleField.MINE_GUESS, VisibleField.QUESTION, VisibleField.COVERED };
+      for(int i = 0;i<guesses.size();i++){
+         if(guesses.get(i).get() != cycle[i % 3]){
+            outOfOrder++;
+         }
+      }
+      Assert(0, outOfOrder, "Operations run in the order submitted");
+      AssertTrue(manager.getSession(session.getId()) == session, "Session found by id");
+      AssertTrue(manager.closeSession(session.getId()), "Session closed");
+      AssertTrue(manager.getSession(session.getId()) == null, "Closed session gone");
+      Assert(0, manager.usedBytes(), "Closed session's memory freed");
+      GameSessionManager.Session late = manager.newGame(9,9,10);
+      manager.shutdown();
+      CompletableFuture<Boolean> rejected = late.uncover(4,4);
+      AssertTrue(rejected.isCompletedExceptionally(), "Operation after shutdown fails");
+      AssertTrue(late.cycleGuess(0,0).isCompletedExceptionally(), "Session not stuck after a rejected operation");
+      System.out.println();
+   }
+   
+   private static void testEviction() throws Exception{
+      System.out.println("Testing Eviction");
+      GameSessionManager manager = new GameSessionManager(3 * 1300, 300);   // room for 3 games of 10 x 10
+      GameSessionManager.Session first = manager.newGame(10,10,10);
+      GameSessionManager.Session second = manager.newGame(10,10,10);
+      manager.newGame(10,10,10);
+      manager.getSession(first.getId());
+      manager.newGame(10,10,10);   // over the budget, so the least recently used goes
+      Assert(3, manager.numSessions(), "Budget evicts a session");
+      AssertTrue(manager.getSession(second.getId()) == null, "Least recently used session evicted");
+      AssertTrue(manager.getSession(first.getId()) != null, "Recently used session kept");
+      boolean failed = false;
+      try{
+         manager.newGame(100,100,10);
+      }
+      catch(IllegalStateException e){
+         failed = true;
+      }
+      AssertTrue(failed, "Game bigger than the budget refused");
+      Assert(3, manager.numSessions(), "Refused game evicts nothing");
+      Thread.sleep(1000);
+      Assert(0, manager.numSessions(), "Idle sessions evicted");
+      manager.shutdown();
+      System.out.println();
+   }
+   
+   private static void testManySessions() throws Exception{
+      System.out.println("Testing Many Sessions");
+      GameSessionManager manager = new GameSessionManager(1L << 30, 60000);
+      List<CompletableFuture<Boolean>> results = new ArrayList<>();
+      for(int i = 0;i<2000;i++){
+         GameSessionManager.Session session = manager.newGame(16,16,40);
+         results.add(session.uncover(8,8));
+      }
+      int mines = 0;
+      for(CompletableFuture<Boolean> result : results){
+         if(!result.get()){
+            mines++;
+         }
+      }
+      Assert(2000, manager.numSessions(), "Sessions hosted");
+      Assert(0, mines, "Every first uncover safe");
+      manager.shutdown();
+      System.out.println();
+   }
+   
+   private static void testServer() throws Exception{
+      System.out.println("Testing Server");
+      GameSessionManager manager = new GameSessionManager(1 << 20, 60000);
+      GameServer server = new GameServer(0, manager);
+      server.start();
+      String base = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+      byte[] created = get(base + "/new?rows=9&cols=9&mines=10");
+      long id = created[0];   // the first session's id fits in one varint byte
+      Assert(1, created.length, "New game returns its id");
+      byte[] delta = get(base + "/uncover?id=" + id + "&row=4&col=4");
+      Assert(0, delta[0] & GameServer.UNCOVERED_A_MINE, "First uncover is never a mine");
+      byte[] state = get(base + "/state?id=" + id);
+      Assert(2 + 3 + 41, state.length, "State is a nibble per square");
+      int[] statuses = new int[81];
+      for(int i = 0;i<81;i++){
+         statuses[i] = ((state[5 + i / 2] >> ((i & 1) * 4)) & 0xf) + VisibleField.QUESTION;
+      }
+      int count = delta[2];   // 10 mines left and at most 71 squares: one varint byte each
+      int mismatches = 0;
+      int uncovered = 0;
+      for(int i = 0, pos = 3, cell = -1;i<count;i++){
+         cell += delta[pos++];
+         if(delta[pos++] != statuses[cell]){
+            mismatches++;
+         }
+      }
+      for(int status : statuses){
+         if(status >= 0){
+            uncovered++;
+         }
+      }
+      Assert(uncovered, count, "Delta has every square uncovered");
+      Assert(0, mismatches, "Delta agrees with state");
+      int covered = 0;
+      while(statuses[covered] >= 0){
+         covered++;
+      }
+      delta = get(base + "/guess?id=" + id + "&row=" + covered / 9 + "&col=" + covered % 9);
+      Assert(9 << 1, delta[1], "Guess leaves 9 mines (zigzag)");
+      Assert(1, delta[2], "Guess changes one square");
+      Assert(covered + 1, delta[3], "Guess delta index");
+      Assert(VisibleField.MINE_GUESS, delta[4], "Guess delta status");
+      Assert(400, status(base + "/uncover?id=" + id + "&row=9&col=0"), "Square out of range refused");
+      Assert(400, status(base + "/new?rows=9"), "Missing parameter refused");
+      Assert(404, status(base + "/state?id=" + (id + 1)), "Unknown session");
+      Assert(200, status(base + "/close?id=" + id), "Session closed");
+      Assert(404, status(base + "/close?id=" + id), "Closed session gone");
+      AssertTrue(GameServerLoadGenerator.run(server.getAddress().getPort(), 8, 500) > 0, "Load generator served");
+      created = get(base + "/new?rows=9&cols=9&mines=10");
+      id = 0;
+      for(int i = created.length - 1;i>=0;i--){   // a varint, least significant 7 bits first
+         id = (id << 7) | (created[i] & 0x7f);
+      }
+      manager.shutdown();   // the server still accepts requests, but the moves are rejected
+      Assert(500, status(base + "/uncover?id=" + id + "&row=4&col=4"), "Move after shutdown fails");
+      server.stop();
+      System.out.println();
+   }
+   
+   private static byte[] get(String url) throws IOException{
+      HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+      try(InputStream in = connection.getInputStream()){
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+         in.transferTo(bytes);
+         return bytes.toByteArray();
+      }
+   }
+   
+   private static int status(String url) throws IOException{
+      HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+      return connection.getResponseCode();
+   }
+   
+   public static void main(String[] args) throws Exception{
+      testSerialOperations();
+      testEviction();
+      testManySessions();
+      testServer();
+   }
+}
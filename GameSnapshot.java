@@ -0,0 +1,152 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * GameSnapshot class Saves a game in progress (a VisibleField and its
+ * MineField) to a file, and loads it back.
+ *
+ * The file is, in little-endian order: MAGIC, the number of rows, columns and
+ * mines, the number of mines guessed, the number of safe squares still covered
+ * and the number of mines uncovered (ints); the mine locations as a bitset of
+ * (rows * cols + 63) / 64 longs (see MineField.packMines); the status of every
+ * square as a 4-bit nibble, (rows * cols + 1) / 2 bytes (see
+ * VisibleField.packStatuses); and a CRC32 of everything before it (an int). So
+ * a square takes 5 bits, under a tenth of the 64 bits of an int-per-square dump
+ * of the mines and the statuses. The counters are worked out again on loading,
+ * and have to agree with the saved ones.
+ *
+ * Files are written and read with FileChannel, through a direct buffer for
+ * small games, and memory-mapped for large ones (over MAP_THRESHOLD bytes), so
+ * the bytes go straight between the page cache and the packing loops.
+ */
+public class GameSnapshot {
+
+   static final int MAGIC = 0x4d53534e; // "MSSN"
+   private static final int HEADER_BYTES = 7 * 4;
+   private static final long MAP_THRESHOLD = 1 << 20;
+
+   /**
+    * Saves a game to a file, replacing anything in it.
+    *
+    * @param field the game to save
+    * @param file  the file to write
+    * @throws IOException if the file can't be written
+    */
+   public static void save(VisibleField field, Path file) throws IOException {
+      MineField mineField = field.getMineField();
+      int numRows = mineField.numRows();
+      int numCols = mineField.numCols();
+      long size = fileSize(numRows, numCols);
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+         boolean mapped = size > MAP_THRESHOLD;
+         ByteBuffer buffer = mapped ? channel.map(FileChannel.MapMode.READ_WRITE, 0, size)
+               : ByteBuffer.allocateDirect((int) size);
+         buffer.order(ByteOrder.LITTLE_ENDIAN);
+         buffer.putInt(MAGIC);
+         buffer.putInt(numRows);
+         buffer.putInt(numCols);
+         buffer.putInt(mineField.numMines());
+         buffer.putInt(mineField.numMines() - field.numMinesLeft());
+         buffer.putInt(field.numCoveredSafeSquares());
+         buffer.putInt(field.numExplodedMines());
+         long[] mines = mineField.packMines();
+         buffer.asLongBuffer().put(mines);
+         buffer.position(buffer.position() + mines.length * 8);
+         field.packStatuses(buffer);
+         buffer.putInt(checksum(buffer, buffer.position()));
+         if (!mapped) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+               channel.write(buffer);
+            }
+         }
+      }
+   }
+
+   /**
+    * Loads a game saved by save. The game comes back on a new VisibleField with
+    * a new MineField (which has fixed mines, so it's like one made with
+    * MineField(boolean[][])), with nothing to undo.
+    *
+    * @param file the file to read
+    * @return the game
+    * @throws IOException if the file can't be read, or isn't a snapshot, or has
+    *                     been damaged
+    */
+   public static VisibleField load(Path file) throws IOException {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+         long size = channel.size();
+         if (size < HEADER_BYTES + 4) {
+            throw new IOException("not a snapshot: " + file);
+         }
+         ByteBuffer buffer;
+         if (size > MAP_THRESHOLD) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+         }
+         else {
+            buffer = ByteBuffer.allocateDirect((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            }
+            buffer.flip();
+         }
+         buffer.order(ByteOrder.LITTLE_ENDIAN);
+         if (buffer.getInt() != MAGIC) {
+            throw new IOException("not a snapshot: " + file);
+         }
+         int numRows = buffer.getInt();
+         int numCols = buffer.getInt();
+         int numMines = buffer.getInt();
+         int minesFound = buffer.getInt();
+         int coveredSafeSquares = buffer.getInt();
+         int numExploded = buffer.getInt();
+         if (numRows <= 0 || numCols <= 0 || fileSize(numRows, numCols) != size
+               || checksum(buffer, (int) size - 4) != buffer.getInt((int) size - 4)) {
+            throw new IOException("damaged snapshot: " + file);
+         }
+         MineField mineField = new MineField(numRows, numCols, numMines);
+         long[] mines = new long[(int) (((long) numRows * numCols + 63) >>> 6)];
+         buffer.asLongBuffer().get(mines);
+         buffer.position(buffer.position() + mines.length * 8);
+         mineField.unpackMines(mines);
+         VisibleField field = new VisibleField(mineField);
+         field.unpackStatuses(buffer, minesFound);
+         if (field.numCoveredSafeSquares() != coveredSafeSquares || field.numExplodedMines() != numExploded) {
+            throw new IOException("inconsistent snapshot: " + file);
+         }
+         return field;
+      }
+   }
+
+   // <put private methods here>
+   /**
+    * Returns the size of the snapshot of a game of the given size.
+    *
+    * @param numRows number of rows
+    * @param numCols number of columns
+    * @return size of the file in bytes
+    */
+   private static long fileSize(int numRows, int numCols) {
+      long squares = (long) numRows * numCols;
+      return HEADER_BYTES + ((squares + 63) >>> 6) * 8 + (squares + 1) / 2 + 4;
+   }
+
+   /**
+    * Returns the CRC32 of the start of a buffer.
+    *
+    * @param buffer the buffer (its position and limit aren't changed)
+    * @param length number of bytes from the start to checksum
+    * @return the checksum
+    */
+   private static int checksum(ByteBuffer buffer, int length) {
+      CRC32 crc = new CRC32();
+      crc.update(buffer.duplicate().position(0).limit(length));
+      return (int) crc.getValue();
+   }
+
+}
@@ -0,0 +1,89 @@
+import java.util.Arrays;
+
+/**
+ * IntBuffer class
+ * A growable list of primitive ints, used by the model to collect square indices (and other small records)
+ * without boxing them. The backing array is reused after clear(), so a buffer that is filled and emptied
+ * over and over only allocates when it needs more room than it has ever had.
+ */
+class IntBuffer {
+
+   private static final int INITIAL_CAPACITY = 16;
+
+   private int[] data;
+   private int size;
+
+   /**
+    * Create an empty buffer.
+    */
+   public IntBuffer() {
+      data = new int[INITIAL_CAPACITY];
+      size = 0;
+   }
+
+   /**
+    * Adds a value to the end of the buffer, growing the backing array if necessary.
+    * 
+    * @param value the value to add
+    */
+   public void add(int value) {
+      if (size == data.length) {
+         data = Arrays.copyOf(data, size * 2);
+      }
+      data[size++] = value;
+   }
+
+   /**
+    * Returns the value at the given position.
+    * 
+    * @param i position of the value, PRE: 0 <= i < size()
+    * @return the value
+    */
+   public int get(int i) {
+      return data[i];
+   }
+
+   /**
+    * Returns the number of values in the buffer.
+    * 
+    * @return number of values
+    */
+   public int size() {
+      return size;
+   }
+
+   /**
+    * Removes and returns the last value in the buffer.
+    * 
+    * @return the value, PRE: size() > 0
+    */
+   public int removeLast() {
+      return data[--size];
+   }
+
+   /**
+    * Shortens the buffer to its first newSize values, keeping its backing array.
+    * 
+    * @param newSize the new size, PRE: 0 <= newSize <= size()
+    */
+   public void truncate(int newSize) {
+      size = newSize;
+   }
+
+   /**
+    * Empties the buffer, keeping its backing array.
+    */
+   public void clear() {
+      size = 0;
+   }
+
+   /**
+    * Returns the backing array. Only the first size() entries are meaningful, and the array may be replaced
+    * the next time a value is added.
+    * 
+    * @return the backing array
+    */
+   public int[] array() {
+      return data;
+   }
+}
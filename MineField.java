@@ -1,14 +1,23 @@
 // Name: Kant Tantasathien
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
  * MineField class with locations of mines for a game. This class is mutable,
  * because we sometimes need to change it once it's created. mutators:
  * populateMineField, resetEmpty includes convenience method to tell the number
  * of mines adjacent to a location.
+ *
+ * It also knows the openings of the field: the connected regions of locations
+ * with no mine and no adjacent mines, each of which a single click opens along
+ * with the numbered locations around it (see numOpenings, openingAt and
+ * openingSize). They are labeled the first time they are asked about after the
+ * mines change, in one linear pass, and kept until the mines change again. The
+ * labels and lists take about two ints per location, allocated at the first
+ * labeling and reused. Since asking about the openings may label them, those
+ * queries change the object, and aren't safe from several threads at once the
+ * way hasMine and numAdjacentMines are.
  */
 public class MineField {
 
@@ -16,7 +25,24 @@ public class MineField {
    private int numRows;
    private int numCols;
    private int numMines;
-   private boolean[][] mineData;
+   private SplittableRandom random; // reused by every populateMineField call
+   private static final int[] NONE_EXCLUDED = new int[0];
+   private final int[] oneExcluded = new int[1]; // the location populateMineField avoids, reused to save allocating
+   private int wordsPerRow; // each row starts on a fresh word so neighbor rows line up bit for bit
+   private long[] mineBits; // row-major bitset of mine locations, bit (col & 63) of word
+                            // row * wordsPerRow + (col >>> 6); bits past numCols are always 0
+
+   // Openings, only meaningful while openingsLabeled (the arrays are kept for the next labeling when the mines
+   // change): openingBits is the bitset (laid out like mineBits) of the locations in openings, and openingLabels
+   // holds the opening of each of those row-major locations (other entries are left over); the locations opened
+   // with opening i are openingCells[openingStarts[i]] to openingCells[openingStarts[i + 1] - 1] (see openingCells()).
+   private boolean openingsLabeled;
+   private int numOpenings;
+   private long[] openingBits;
+   private int[] openingLabels;
+   private int[] openingStarts;
+   private int[] openingCells;
+   private int[] openingBorders; // scratch for labelOpenings, kept for the next labeling
 
    /**
     * Create a minefield with same dimensions as the given array, and populate it
@@ -30,17 +56,18 @@ public class MineField {
     *                 location and false if it's not at the location.
     */
    public MineField(boolean[][] mineData) {
+      this.random = new SplittableRandom();
       this.numRows = mineData.length;
       this.numCols = mineData[0].length;
       this.numMines = 0;
-      this.mineData = new boolean[numRows][]; // created a new Array for our mineData, this ensure that our data is
-                                              // safely copied
+      this.wordsPerRow = (numCols + 63) >>> 6;
+      this.mineBits = new long[numRows * wordsPerRow]; // created a new Array for our mines, this ensure that our
+                                                       // data is safely copied
       for (int r = 0; r < numRows; r++) { // loop through all of the rows
-         this.mineData[r] = new boolean[numCols]; // create an array to hold all of the cells on a per row basis
          for (int c = 0; c < numCols; c++) {
             if (mineData[r][c]) { // Detecting whether or not a mine exists at this location
                this.numMines++;
-               this.mineData[r][c] = true; // Placing a mine in the copy of the data
+               setMine(r, c); // Placing a mine in the copy of the data
             }
          }
       }
@@ -55,49 +82,136 @@ public class MineField {
     * @param numRows  number of rows this minefield will have, must be positive
     * @param numCols  number of columns this minefield will have, must be positive
     * @param numMines number of mines this minefield will have, once we populate
-    *                 it. PRE: numRows > 0 and numCols > 0 and 0 <= numMines < (1/3
-    *                 of total number of field locations).
+    *                 it. PRE: numRows > 0 and numCols > 0 and 0 <= numMines <
+    *                 total number of field locations.
     */
    public MineField(int numRows, int numCols, int numMines) {
+      this(numRows, numCols, numMines, new SplittableRandom());
+   }
+
+   /**
+    * Create an empty minefield like the three-arg constructor, whose mine
+    * placements come from a random generator with the given seed. Two minefields
+    * created with the same arguments place their mines identically on every
+    * sequence of populateMineField calls.
+    * 
+    * @param numRows  number of rows this minefield will have, must be positive
+    * @param numCols  number of columns this minefield will have, must be positive
+    * @param numMines number of mines this minefield will have, once we populate
+    *                 it. PRE: numRows > 0 and numCols > 0 and 0 <= numMines <
+    *                 total number of field locations.
+    * @param seed     seed for the random mine placements
+    */
+   public MineField(int numRows, int numCols, int numMines, long seed) {
+      this(numRows, numCols, numMines, new SplittableRandom(seed));
+   }
+
+   private MineField(int numRows, int numCols, int numMines, SplittableRandom random) {
+      this.random = random;
       this.numRows = numRows;
       this.numCols = numCols;
       this.numMines = numMines;
-      this.mineData = new boolean[numRows][];
-      for (int r = 0; r < numRows; r++) {
-         this.mineData[r] = new boolean[numCols];
-         for (int c = 0; c < numCols; c++) {
-            this.mineData[r][c] = false;
-         }
-      }
+      this.wordsPerRow = (numCols + 63) >>> 6;
+      this.mineBits = new long[numRows * wordsPerRow]; // a new long[] is all zeros, i.e. no mines
    }
 
    /**
     * Removes any current mines on the minefield, and puts numMines() mines in
     * random locations on the minefield, ensuring that no mine is placed at (row,
-    * col).
+    * col). Uses Floyd's sampling algorithm over the locations other than (row,
+    * col): every draw places a mine, so there are no retries and the cost is
+    * linear in numMines() (plus clearing the old mines) at any density.
     * 
     * @param row the row of the location to avoid placing a mine
     * @param col the column of the location to avoid placing a mine PRE:
-    *            inRange(row, col) and numMines() < (1/3 * numRows() * numCols())
+    *            inRange(row, col) and numMines() < numRows() * numCols()
     */
    public void populateMineField(int row, int col) {
-      resetEmpty(); // make sure the minefield is empty
-      Random random = new Random(); // Instantiate the random object
-      int currentMine = 0;
-      while (currentMine < numMines) { // loop until the number of mine we placed is equal to the mines we are supposed
-                                       // to place
-         int r = random.nextInt(numRows);
-         int c = random.nextInt(numCols);
-         if (r == row && c == col) { // ensure that the rows & column we select are not the same as the one we are
-                                     // supposed to ignore
-            continue;
-         }
-         if (mineData[r][c]) { // ensure that we are not placing mines on the same location
-            continue;
+      oneExcluded[0] = row * numCols + col;
+      placeMines(oneExcluded);
+   }
+
+   /**
+    * Removes any current mines on the minefield, and puts numMines() mines in
+    * random locations on the minefield, any location being allowed. Placement
+    * works like populateMineField(row, col). PRE: numMines() <= numRows() *
+    * numCols()
+    */
+   public void populateMineField() {
+      placeMines(NONE_EXCLUDED);
+   }
+
+   /**
+    * Removes any current mines on the minefield, and puts numMines() mines in
+    * random locations on the minefield, ensuring that no mine is placed at (row,
+    * col) or at any location adjacent to it, so that (row, col) has no adjacent
+    * mines and opening it opens a region. Placement works like populateMineField.
+    * 
+    * @param row the row of the location to keep clear around
+    * @param col the column of the location to keep clear around PRE: inRange(row,
+    *            col) and numMines() <= numRows() * numCols() minus the number of
+    *            locations in the (at most 3 x 3) block around (row, col)
+    */
+   public void populateMineFieldAround(int row, int col) {
+      int top = Math.max(row - 1, 0);
+      int bottom = Math.min(row + 1, numRows - 1);
+      int left = Math.max(col - 1, 0);
+      int right = Math.min(col + 1, numCols - 1);
+      int[] excluded = new int[(bottom - top + 1) * (right - left + 1)];
+      int i = 0;
+      for (int r = top; r <= bottom; r++) { // row-major, so the excluded locations come out in ascending order
+         for (int c = left; c <= right; c++) {
+            excluded[i++] = r * numCols + c;
          }
-         mineData[r][c] = true; // Place the mine at our random location
-         currentMine++; // increase our counter
       }
+      placeMines(excluded);
+   }
+
+   /**
+    * Replaces the random generator used by populateMineField with one seeded by
+    * the given seed, so the following placements are reproducible.
+    * 
+    * @param seed seed for the random mine placements
+    */
+   public void setSeed(long seed) {
+      random = new SplittableRandom(seed);
+   }
+
+   /**
+    * Replaces the mines on this minefield with a copy of the mines on another
+    * minefield of the same dimensions. numMines() is not changed.
+    * 
+    * @param other the minefield to copy. PRE: other.numRows() == numRows() and
+    *              other.numCols() == numCols()
+    */
+   public void copyMinesFrom(MineField other) {
+      System.arraycopy(other.mineBits, 0, mineBits, 0, mineBits.length);
+      forgetOpenings();
+   }
+
+   /**
+    * Makes sure there is no mine at (row, col) by moving a mine there, if there is
+    * one, to a random location that has no mine. The number of mines stays the
+    * same. Applied to a minefield populated with mines placed uniformly at random,
+    * this gives the same distribution as populateMineField(row, col), so a
+    * minefield populated ahead of time (before the first square was known) can
+    * be used for a game.
+    * 
+    * @param row the row of the location to clear
+    * @param col the column of the location to clear PRE: inRange(row, col) and
+    *            numMines() < numRows() * numCols()
+    */
+   public void moveMineAwayFrom(int row, int col) {
+      if (!hasMine(row, col)) {
+         return;
+      }
+      int loc;
+      do {
+         loc = random.nextInt(numRows * numCols);
+      } while (hasMine(loc / numCols, loc % numCols)); // (row, col) still has its mine, so it's never chosen
+      setMine(loc / numCols, loc % numCols);
+      mineBits[row * wordsPerRow + (col >>> 6)] &= ~(1L << col);
+      forgetOpenings();
    }
 
    /**
@@ -107,11 +221,8 @@ public class MineField {
     * created with the three-arg constructor is in at the beginning of a game.
     */
    public void resetEmpty() {
-      for (int r = 0; r < numRows; r++) {
-         for (int c = 0; c < numCols; c++) {
-            mineData[r][c] = false; // loop through all the rows & columns and set everything to false
-         }
-      }
+      Arrays.fill(mineBits, 0L); // clearing every word sets every location to empty
+      forgetOpenings();
    }
 
    /**
@@ -121,42 +232,45 @@ public class MineField {
     * 
     * @param row row of the location to check
     * @param col column of the location to check
-    * @return the number of mines adjacent to the square at (row, col) Used Ternary
-    *         Operator to simplify the conversion of Booleans to integers. If the
-    *         boolean is true, the ternary will return a 1. If the boolean is
-    *         false, the ternary will return a 0. PRE: inRange(row, col)
+    * @return the number of mines adjacent to the square at (row, col), counted
+    *         straight from the mine bitset without allocating anything. PRE:
+    *         inRange(row, col)
     */
    public int numAdjacentMines(int row, int col) {
-      List<Integer> cells = new ArrayList<>(8); // create a list of integers to hold adjacent cells
-      if (row > 0) { // handling the top 3 cells
-         if (col > 0) { // topleft
-            cells.add(mineData[row - 1][col - 1] ? 1 : 0); // if a mine exists in the indicated cells, put a 1 on the
-                                                           // list, otherwise put a 0
-         }
-         cells.add(mineData[row - 1][col] ? 1 : 0); // top middle
-         if (col < numCols - 1) {
-            cells.add(mineData[row - 1][col + 1] ? 1 : 0); // top right
-         }
+      int count = 0;
+      for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, numRows - 1); r++) {
+         count += numMinesAround(r, col);
       }
-      if (row < numRows - 1) { // bottom three cells
-         if (col > 0) {
-            cells.add(mineData[row + 1][col - 1] ? 1 : 0); // bottom left
-         }
-         cells.add(mineData[row + 1][col] ? 1 : 0); // bottom middle
-         if (col < numCols - 1) {
-            cells.add(mineData[row + 1][col + 1] ? 1 : 0); // bottom right
+      return hasMine(row, col) ? count - 1 : count; // don't count a mine at (row, col) itself
+   }
+
+   /**
+    * Computes the adjacent mine counts of the 64 locations stored in one word of
+    * a row all at once. The eight neighbor masks (the rows above and below shifted
+    * left, unshifted and right, plus this row shifted left and right) are summed
+    * with bit-sliced adders, so bit i of planes[k] is bit k of the count for
+    * column (word * 64 + i). Bits for columns past numCols() are 0 in every plane.
+    * 
+    * @param row    the row to count
+    * @param word   which group of 64 columns to count, in [0, (numCols() + 63) /
+    *               64)
+    * @param planes receives the 4 bit planes of the counts; must have length at
+    *               least 4. PRE: 0 <= row < numRows()
+    */
+   void adjacentCountPlanes(int row, int word, long[] planes) {
+      Arrays.fill(planes, 0, 4, 0L);
+      for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, numRows - 1); r++) {
+         long center = wordAt(r, word);
+         addToPlanes(planes, (center << 1) | (wordAt(r, word - 1) >>> 63)); // bit i holds the mine at column i - 1
+         addToPlanes(planes, (center >>> 1) | (wordAt(r, word + 1) << 63)); // bit i holds the mine at column i + 1
+         if (r != row) { // the location itself is not its own neighbor
+            addToPlanes(planes, center);
          }
       }
-      if (col > 0) {
-         cells.add(mineData[row][col - 1] ? 1 : 0); // left
+      long valid = validColumns(word);
+      for (int k = 0; k < 4; k++) {
+         planes[k] &= valid;
       }
-      if (col < numCols - 1) {
-         cells.add(mineData[row][col + 1] ? 1 : 0); // right
-      }
-      return cells.stream().mapToInt(Integer::intValue).sum(); // Essentially cast this something that is able to get a
-                                                               // sum for
-                                                               // sum counts the number of adjacent cells that contain
-                                                               // the mine
    }
 
    /**
@@ -198,7 +312,7 @@ public class MineField {
     * @return whether there is a mine in this square PRE: inRange(row, col)
     */
    public boolean hasMine(int row, int col) {
-      return mineData[row][col];
+      return ((mineBits[row * wordsPerRow + (col >>> 6)] >>> col) & 1L) != 0; // shifts only use the low 6 bits of col
    }
 
    /**
@@ -213,6 +327,483 @@ public class MineField {
       return numMines;
    }
 
+   /**
+    * Returns the number of openings: connected (diagonals included) regions of
+    * locations that have no mine and no adjacent mines. Uncovering any location
+    * of an opening opens all of it. Labels the openings if the mines changed
+    * since they were last labeled, so not thread-safe (see the class comment).
+    * 
+    * @return number of openings
+    */
+   public int numOpenings() {
+      labelOpenings();
+      return numOpenings;
+   }
+
+   /**
+    * Returns the opening a location is in. Not thread-safe, like numOpenings.
+    * 
+    * @param row row of the location
+    * @param col column of the location
+    * @return the opening, from 0 to numOpenings() - 1, or -1 if the location has
+    *         a mine or adjacent mines. PRE: inRange(row, col)
+    */
+   public int openingAt(int row, int col) {
+      return openingOf(row * numCols + col);
+   }
+
+   /**
+    * Returns the number of locations uncovering an opening opens: its own
+    * locations, and the numbered ones around them. Not thread-safe, like
+    * numOpenings.
+    * 
+    * @param opening the opening, PRE: 0 <= opening < numOpenings()
+    * @return number of locations opened
+    */
+   public int openingSize(int opening) {
+      labelOpenings();
+      return openingStarts[opening + 1] - openingStarts[opening];
+   }
+
+   /**
+    * Returns the opening a location is in, like openingAt.
+    * 
+    * @param cell row-major index of the location
+    * @return the opening, or -1
+    */
+   int openingOf(int cell) {
+      labelOpenings();
+      int row = cell / numCols;
+      int col = cell - row * numCols;
+      return inOpening(row, col) ? openingLabels[cell] : -1;
+   }
+
+   /**
+    * Returns the locations opened with every opening, one opening after
+    * another (see openingStart): in each, the opening's own locations in row-major
+    * order, then the numbered ones around it in row-major order. A location of
+    * the opening itself is its row-major index, and a numbered location around
+    * it is ~index (so negative). Not to be changed.
+    * 
+    * @return the locations
+    */
+   int[] openingCells() {
+      labelOpenings();
+      return openingCells;
+   }
+
+   /**
+    * Returns where an opening's locations start in openingCells(); they end where
+    * the next opening's start.
+    * 
+    * @param opening the opening, PRE: 0 <= opening <= numOpenings()
+    * @return index into openingCells()
+    */
+   int openingStart(int opening) {
+      labelOpenings();
+      return openingStarts[opening];
+   }
+
+   /**
+    * Returns the mine locations as a dense row-major bitset: location (row, col)
+    * is bit (i & 63) of word i >>> 6, where i = row * numCols() + col. Unlike the
+    * internal layout, rows aren't padded, so this is the compact form for saving.
+    * 
+    * @return the packed mine locations, (numRows() * numCols() + 63) / 64 words
+    */
+   long[] packMines() {
+      long[] packed = new long[(int) (((long) numRows * numCols + 63) >>> 6)];
+      for (int r = 0; r < numRows; r++) {
+         long start = (long) r * numCols; // bit of packed where the row starts
+         for (int word = 0; word < wordsPerRow; word++) { // padding bits are 0, so whole words can be or-ed in
+            long bits = mineBits[r * wordsPerRow + word];
+            long pos = start + (word << 6);
+            int shift = (int) (pos & 63);
+            packed[(int) (pos >>> 6)] |= bits << shift;
+            if (shift != 0 && (pos >>> 6) + 1 < packed.length) {
+               packed[(int) (pos >>> 6) + 1] |= bits >>> (64 - shift);
+            }
+         }
+      }
+      return packed;
+   }
+
+   /**
+    * Replaces the mines on this minefield with the ones in a bitset made by
+    * packMines() on a minefield of the same dimensions. numMines() is not
+    * changed.
+    * 
+    * @param packed the packed mine locations
+    */
+   void unpackMines(long[] packed) {
+      for (int r = 0; r < numRows; r++) {
+         long start = (long) r * numCols;
+         for (int word = 0; word < wordsPerRow; word++) {
+            long pos = start + (word << 6);
+            int shift = (int) (pos & 63);
+            long bits = packed[(int) (pos >>> 6)] >>> shift;
+            if (shift != 0 && (pos >>> 6) + 1 < packed.length) {
+               bits |= packed[(int) (pos >>> 6) + 1] << (64 - shift);
+            }
+            mineBits[r * wordsPerRow + word] = bits & validColumns(word); // the rest belongs to the next row
+         }
+      }
+      forgetOpenings();
+   }
+
    // <put private methods here>
+   /**
+    * Clears the minefield and places numMines() mines at random on the locations
+    * that aren't excluded, using Floyd's sampling algorithm: every draw places a
+    * mine, so there are no retries.
+    * 
+    * @param excluded row-major indices of the locations to keep free of mines, in
+    *                 ascending order. PRE: numMines() <= numRows() * numCols() -
+    *                 excluded.length
+    */
+   private void placeMines(int[] excluded) {
+      resetEmpty(); // make sure the minefield is empty
+      int candidates = numRows * numCols - excluded.length; // every location that isn't excluded
+      for (int j = candidates - numMines; j < candidates; j++) {
+         int loc = skipExcluded(random.nextInt(j + 1), excluded);
+         if (hasMine(loc / numCols, loc % numCols)) { // already taken, so take j instead, which can't be yet
+            loc = skipExcluded(j, excluded);
+         }
+         setMine(loc / numCols, loc % numCols);
+      }
+   }
+
+   /**
+    * Maps a candidate number in [0, numRows * numCols - excluded.length) to a
+    * row-major location, skipping over the excluded locations.
+    * 
+    * @param candidate the candidate number
+    * @param excluded  row-major indices of the locations to skip, in ascending
+    *                  order
+    * @return the row-major index of the location
+    */
+   private static int skipExcluded(int candidate, int[] excluded) {
+      int loc = candidate;
+      for (int e : excluded) {
+         if (loc >= e) {
+            loc++;
+         }
+      }
+      return loc;
+   }
+
+   /**
+    * Places a mine at (row, col).
+    * 
+    * @param row row of the location
+    * @param col column of the location
+    */
+   private void setMine(int row, int col) {
+      mineBits[row * wordsPerRow + (col >>> 6)] |= 1L << col;
+   }
+
+   /**
+    * Forgets the openings, after the mines changed.
+    */
+   private void forgetOpenings() {
+      openingsLabeled = false;
+   }
+
+   /**
+    * Labels the openings, if they aren't already. The locations with no adjacent
+    * mines are found 64 at a time from the adjacent count planes, and joined up
+    * with a union-find in one row-major pass, each joined to its west, northwest,
+    * north and northeast neighbors: mostly by just taking one of them as its
+    * parent, since neighbors of each other are already joined, so real unions
+    * are rare. Roots are always the lowest location of their set, so every parent
+    * comes before its child, and a second pass can number the openings in place.
+    * Then the locations each opening opens are counted and listed with a
+    * counting sort: the numbered locations around the openings, which take
+    * looking at their neighbors, are found once, into a scratch list of pairs.
+    */
+   private void labelOpenings() {
+      if (openingsLabeled) {
+         return;
+      }
+      if (openingLabels == null) {
+         openingLabels = new int[numRows * numCols];
+         openingBits = new long[mineBits.length];
+         openingBorders = new int[64];
+      }
+      int[] labels = openingLabels; // only ever read where a location is in an opening, so never cleared
+      long[] planes = new long[4];
+      for (int r = 0; r < numRows; r++) {
+         for (int word = 0; word < wordsPerRow; word++) {
+            adjacentCountPlanes(r, word, planes);
+            long zero = ~(planes[0] | planes[1] | planes[2] | planes[3]) & ~mineBits[r * wordsPerRow + word]
+                  & validColumns(word);
+            openingBits[r * wordsPerRow + word] = zero;
+            for (long bits = zero; bits != 0; bits &= bits - 1) {
+               int c = (word << 6) + Long.numberOfTrailingZeros(bits);
+               int cell = r * numCols + c;
+               long above = (r > 0) ? window(r - 1, c) : 0; // bit 0 northwest, 1 north, 2 northeast
+               if (c > 0 && inOpening(r, c - 1)) { // west, which is joined to northwest and north already
+                  labels[cell] = cell - 1;
+                  if ((above & 0b110) == 0b100) {
+                     union(labels, cell, cell - numCols + 1);
+                  }
+               }
+               else if ((above & 0b010) != 0) { // north, which is joined to northwest and northeast already
+                  labels[cell] = cell - numCols;
+               }
+               else if ((above & 0b001) != 0) {
+                  labels[cell] = cell - numCols - 1;
+                  if ((above & 0b100) != 0) {
+                     union(labels, cell, cell - numCols + 1);
+                  }
+               }
+               else {
+                  labels[cell] = ((above & 0b100) != 0) ? cell - numCols + 1 : cell;
+               }
+            }
+         }
+      }
+      numOpenings = 0;
+      for (int r = 0; r < numRows; r++) {
+         for (int word = 0; word < wordsPerRow; word++) {
+            for (long bits = openingBits[r * wordsPerRow + word]; bits != 0; bits &= bits - 1) {
+               int cell = r * numCols + (word << 6) + Long.numberOfTrailingZeros(bits);
+               int parent = labels[cell];
+               labels[cell] = (parent == cell) ? numOpenings++ : labels[parent]; // parent is numbered already
+            }
+         }
+      }
+      if (openingStarts == null || openingStarts.length < numOpenings + 1) {
+         openingStarts = new int[numOpenings + 1];
+      }
+      int[] starts = openingStarts;
+      Arrays.fill(starts, 0, numOpenings + 1, 0);
+      for (int r = 0; r < numRows; r++) {
+         for (int word = 0; word < wordsPerRow; word++) {
+            for (long bits = openingBits[r * wordsPerRow + word]; bits != 0; bits &= bits - 1) {
+               starts[labels[r * numCols + (word << 6) + Long.numberOfTrailingZeros(bits)] + 1]++;
+            }
+         }
+      }
+      int numBorders = listBorders(starts);
+      for (int i = 0; i < numOpenings; i++) {
+         starts[i + 1] += starts[i];
+      }
+      if (openingCells == null || openingCells.length < starts[numOpenings]) {
+         openingCells = new int[starts[numOpenings]];
+      }
+      int[] cells = openingCells;
+      int[] next = Arrays.copyOf(starts, numOpenings);
+      for (int r = 0; r < numRows; r++) {
+         for (int word = 0; word < wordsPerRow; word++) {
+            for (long bits = openingBits[r * wordsPerRow + word]; bits != 0; bits &= bits - 1) {
+               int cell = r * numCols + (word << 6) + Long.numberOfTrailingZeros(bits);
+               cells[next[labels[cell]]++] = cell;
+            }
+         }
+      }
+      for (int i = 0; i < numBorders; i++) {
+         cells[next[openingBorders[2 * i]]++] = ~openingBorders[2 * i + 1];
+      }
+      openingsLabeled = true;
+   }
+
+   /**
+    * Finds the numbered locations next to each opening, in row-major order, into
+    * openingBorders: a pair (opening, location) for each different opening a
+    * location is next to. Locations next to an opening are found 64 at a time,
+    * by spreading openingBits one location in every direction.
+    * 
+    * @param counts for each opening, counted into counts[opening + 1]
+    * @return the number of pairs
+    */
+   private int listBorders(int[] counts) {
+      int[] around = new int[8];
+      int numPairs = 0;
+      for (int r = 0; r < numRows; r++) {
+         for (int word = 0; word < wordsPerRow; word++) {
+            long near = 0; // locations with an opening among their neighbors (or in one)
+            for (int nr = Math.max(r - 1, 0); nr <= Math.min(r + 1, numRows - 1); nr++) {
+               long z = openingBits[nr * wordsPerRow + word];
+               long west = (word > 0) ? openingBits[nr * wordsPerRow + word - 1] : 0;
+               long east = (word + 1 < wordsPerRow) ? openingBits[nr * wordsPerRow + word + 1] : 0;
+               near |= z | (z << 1) | (west >>> 63) | (z >>> 1) | (east << 63);
+            }
+            long border = near & ~openingBits[r * wordsPerRow + word] & ~mineBits[r * wordsPerRow + word]
+                  & validColumns(word);
+            for (long bits = border; bits != 0; bits &= bits - 1) {
+               int c = (word << 6) + Long.numberOfTrailingZeros(bits);
+               int numAround = 0;
+               for (int nr = Math.max(r - 1, 0); nr <= Math.min(r + 1, numRows - 1); nr++) {
+                  for (long near3 = window(nr, c); near3 != 0; near3 &= near3 - 1) {
+                     int opening = openingLabels[nr * numCols + c - 1 + Long.numberOfTrailingZeros(near3)];
+                     if (!contains(around, numAround, opening)) {
+                        around[numAround++] = opening;
+                     }
+                  }
+               }
+               if (openingBorders.length < 2 * (numPairs + numAround)) { // at least 16 to start with, so doubling is enough
+                  openingBorders = Arrays.copyOf(openingBorders, 2 * openingBorders.length);
+               }
+               for (int i = 0; i < numAround; i++) {
+                  counts[around[i] + 1]++;
+                  openingBorders[2 * numPairs] = around[i];
+                  openingBorders[2 * numPairs + 1] = r * numCols + c;
+                  numPairs++;
+               }
+            }
+         }
+      }
+      return numPairs;
+   }
+
+   /**
+    * Returns whether a location is in an opening, once openingBits is worked out.
+    * 
+    * @param row row of the location
+    * @param col column of the location
+    * @return whether it has no mine and no adjacent mines
+    */
+   private boolean inOpening(int row, int col) {
+      return ((openingBits[row * wordsPerRow + (col >>> 6)] >>> col) & 1L) != 0;
+   }
+
+   /**
+    * Returns which of the locations at columns col - 1, col and col + 1 of a row
+    * are in openings, once openingBits is worked out, like numMinesAround.
+    * 
+    * @param r   row to look in
+    * @param col center column
+    * @return bit 0 for col - 1, bit 1 for col and bit 2 for col + 1 (0 for
+    *         columns off the field)
+    */
+   private long window(int r, int col) {
+      int base = r * wordsPerRow;
+      int word = col >>> 6;
+      int bit = col & 63;
+      long bits = openingBits[base + word];
+      long result = (bit == 0) ? bits << 1 : bits >>> (bit - 1);
+      if (bit == 0 && word > 0) {
+         result |= openingBits[base + word - 1] >>> 63;
+      }
+      if (bit == 63 && word + 1 < wordsPerRow) {
+         result |= openingBits[base + word + 1] << 2;
+      }
+      return result & 0b111;
+   }
+
+   /**
+    * Joins the sets of two locations in a union-find, making the lower root the
+    * root of both. Halves the paths it follows.
+    * 
+    * @param parents the parent of each location (a root is its own parent)
+    * @param a       a location in a set
+    * @param b       another location in a set
+    */
+   private static void union(int[] parents, int a, int b) {
+      a = find(parents, a);
+      b = find(parents, b);
+      if (a < b) {
+         parents[b] = a;
+      }
+      else if (b < a) {
+         parents[a] = b;
+      }
+   }
+
+   /**
+    * Returns the root of a location's set in a union-find, halving the path to it.
+    * 
+    * @param parents the parent of each location
+    * @param a       the location
+    * @return the root
+    */
+   private static int find(int[] parents, int a) {
+      while (parents[a] != a) {
+         parents[a] = parents[parents[a]];
+         a = parents[a];
+      }
+      return a;
+   }
+
+   /**
+    * Returns whether a value is among the first count entries of an array.
+    * 
+    * @param values the array
+    * @param count  number of entries to look at
+    * @param value  the value
+    * @return whether it's there
+    */
+   private static boolean contains(int[] values, int count, int value) {
+      for (int i = 0; i < count; i++) {
+         if (values[i] == value) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Returns the number of mines in row r at columns col - 1, col and col + 1,
+    * ignoring columns that are off the field. Only the bits of the word holding
+    * col, plus one bit of a neighboring word at a word boundary, are looked at.
+    * 
+    * @param r   row to look in
+    * @param col center column
+    * @return number of mines in those (at most) 3 locations
+    */
+   private int numMinesAround(int r, int col) {
+      int base = r * wordsPerRow;
+      int word = col >>> 6;
+      int bit = col & 63;
+      long mask = (bit == 0) ? 0b11L : (0b111L << (bit - 1)); // at bit 63 the top bit of the mask just falls off
+      int count = Long.bitCount(mineBits[base + word] & mask);
+      if (bit == 0 && word > 0) {
+         count += (int) (mineBits[base + word - 1] >>> 63);
+      }
+      if (bit == 63 && word + 1 < wordsPerRow) {
+         count += (int) (mineBits[base + word + 1] & 1L);
+      }
+      return count;
+   }
+
+   /**
+    * Adds a one-bit-per-column mask to the 4-bit counts held in planes, using a
+    * ripple of half adders (one per plane). Counts never exceed 8, so the top
+    * plane can't overflow.
+    * 
+    * @param planes bit planes of the running counts, least significant first
+    * @param x      mask of columns to add one to
+    */
+   private static void addToPlanes(long[] planes, long x) {
+      for (int k = 0; k < 4 && x != 0; k++) {
+         long carry = planes[k] & x;
+         planes[k] ^= x;
+         x = carry;
+      }
+   }
+
+   /**
+    * Returns the given word of row r, or 0 for a word off either end of the row.
+    * 
+    * @param r    row of the word
+    * @param word index of the word within the row
+    * @return the mine bits stored in that word
+    */
+   private long wordAt(int r, int word) {
+      return (word < 0 || word >= wordsPerRow) ? 0L : mineBits[r * wordsPerRow + word];
+   }
+
+   /**
+    * Returns a mask of the bits in the given word of a row that correspond to real
+    * columns (i.e., all ones except for the padding in the last word of a row).
+    * 
+    * @param word index of the word within a row
+    * @return mask of valid column bits
+    */
+   private long validColumns(int word) {
+      int remaining = numCols - (word << 6);
+      return (remaining >= 64) ? -1L : (1L << remaining) - 1;
+   }
 
 }
@@ -33,7 +33,206 @@ public class MineFieldTester{
       }
       Assert(field.numMines(), count, "Populated Correct Mine Count");
    }
-   public static void main(String[] args){
+   public static void testDensePopulate(){
+      System.out.println("Testing Dense Populate (4x4 - 15)");
+      MineField full = new MineField(4,4,15);
+      testPopulate(full);
+      AssertFalse(full.hasMine(0,0),"Dense populate avoids location");
+      Assert(3,full.numAdjacentMines(0,0),"Dense populate fills the rest");
+      
+      MineField first = new MineField(30,16,99,42L);
+      MineField second = new MineField(30,16,99,42L);
+      first.populateMineField(5,5);
+      second.populateMineField(5,5);
+      int differences = 0;
+      for(int r =0;r<30;r++){
+         for(int c =0;c<16;c++){
+            if(first.hasMine(r,c) != second.hasMine(r,c)){
+               differences++;
+            }
+         }
+      }
+      Assert(0,differences,"Seeded populate is reproducible");
+      System.out.println();
+   }
+   public static void testAdjacentCounts(){
+      boolean [][] testData = {{false, false, false, false},
+                               {true, false, false, false},
+                               {false, true, true, false},
+                               {false, true, false, true}};
+      MineField field = new MineField(testData);
+      System.out.println("Testing Adjacent Mine Counts");
+      Assert(1,field.numAdjacentMines(0,0),"Adjacent 0,0");
+      Assert(3,field.numAdjacentMines(1,1),"Adjacent 1,1");
+      Assert(2,field.numAdjacentMines(1,2),"Adjacent 1,2");
+      Assert(3,field.numAdjacentMines(2,1),"Adjacent 2,1 (not counting itself)");
+      Assert(4,field.numAdjacentMines(3,2),"Adjacent 3,2");
+      Assert(1,field.numAdjacentMines(3,3),"Adjacent 3,3");
+      field.resetEmpty();
+      Assert(0,field.numAdjacentMines(1,1),"Adjacent 1,1 after reset");
+      
+      MineField random = new MineField(9,9,20);
+      random.populateMineField(4,4);
+      int mismatches = 0;
+      for(int r =0;r<9;r++){
+         for(int c =0;c<9;c++){
+            int count = 0;
+            for(int nr = r-1;nr<=r+1;nr++){
+               for(int nc = c-1;nc<=c+1;nc++){
+                  if((nr != r || nc != c) && random.inRange(nr,nc) && random.hasMine(nr,nc)){
+                     count++;
+                  }
+               }
+            }
+            if(count != random.numAdjacentMines(r,c)){
+               mismatches++;
+            }
+         }
+      }
+      Assert(0,mismatches,"Populated Adjacent Counts Match Mines");
+      System.out.println();
+   }
+   public static void testWideField(){
+      MineField field = new MineField(5,130,200);
+      field.populateMineField(2,64);
+      System.out.println("Testing Wide Field (5x130 - 200)");
+      AssertFalse(field.hasMine(2,64),"Avoided location across word boundary");
+      int mismatches = 0;
+      long[] planes = new long[4];
+      for(int r =0;r<5;r++){
+         for(int w =0;w<3;w++){
+            field.adjacentCountPlanes(r,w,planes);
+            for(int i = 0;i<64;i++){
+               int c = w*64 + i;
+               int fromPlanes = 0;
+               for(int k = 0;k<4;k++){
+                  fromPlanes |= (int)((planes[k] >>> i) & 1L) << k;
+               }
+               int count = 0;
+               if(c < 130){
+                  for(int nr = r-1;nr<=r+1;nr++){
+                     for(int nc = c-1;nc<=c+1;nc++){
+                        if((nr != r || nc != c) && field.inRange(nr,nc) && field.hasMine(nr,nc)){
+                           count++;
+                        }
+                     }
+                  }
+                  if(count != field.numAdjacentMines(r,c)){
+                     mismatches++;
+                  }
+               }
+               if(count != fromPlanes){
+                  mismatches++;
+               }
+            }
+         }
+      }
+      Assert(0,mismatches,"Word-parallel and single Adjacent Counts Match Mines");
+      System.out.println();
+   }
+   public static void testBoardPool() throws InterruptedException{
+      System.out.println("Testing Board Pool (4x4 - 15)");
+      BoardPool pool = new BoardPool(2);
+      pool.register(4,4,15);
+      for(int i = 0;i<100 && pool.numReady(4,4,15) < 2;i++){
+         Thread.sleep(10);
+      }
+      Assert(2,pool.numReady(4,4,15),"Pool filled in the background");
+      MineField field = new MineField(4,4,15);
+      AssertTrue(pool.populate(field,2,3),"Ready minefield used");
+      AssertFalse(field.hasMine(2,3),"Pooled minefield avoids location");
+      Assert(5,field.numAdjacentMines(2,3),"Mine moved away from location");
+      field.resetEmpty();
+      AssertTrue(pool.populate(field,0,0),"Second ready minefield used");
+      AssertFalse(field.hasMine(0,0),"Second pooled minefield avoids location");
+      Assert(3,field.numAdjacentMines(0,0),"Dense pooled minefield keeps its mines");
+      AssertFalse(pool.populate(new MineField(5,5,3),0,0),"Unregistered size populated directly");
+      System.out.println();
+   }
+   private static void testOpenings(){
+      System.out.println("Testing Openings");
+      boolean [][] testData = new boolean[5][];
+      for(int i = 0;i<5;i++){
+         testData[i] = new boolean[5];
+      }
+      testData[2][0] = true;   // splits the left column, but the openings join round the right
+      testData[2][1] = true;
+      testData[2][2] = true;
+      MineField small = new MineField(testData);
+      Assert(1, small.numOpenings(), "One opening round the mines");
+      Assert(22, small.openingSize(small.openingAt(0,4)), "Opening opens every safe square");
+      Assert(-1, small.openingAt(1,1), "Numbered square in no opening");
+      Assert(-1, small.openingAt(2,1), "Mine in no opening");
+      testData[2][3] = true;
+      testData[2][4] = true;
+      MineField split = new MineField(testData);
+      Assert(2, split.numOpenings(), "Row of mines splits openings");
+      Assert(10, split.openingSize(split.openingAt(0,0)), "Top opening with its numbers");
+      AssertTrue(split.openingAt(0,0) != split.openingAt(4,4), "Split openings differ");
+      
+      int wrongSizes = 0;
+      int wrongLabels = 0;
+      int wrongCounts = 0;
+      for(int seed = 0;seed<20;seed++){
+         MineField field = new MineField(40,150,600 + 100 * (seed % 5),seed);   // rows span three words
+         field.populateMineField(20,75);
+         int rows = field.numRows();
+         int cols = field.numCols();
+         int[] seen = new int[rows * cols];   // the opening each square was reached from, plus 1
+         int openings = 0;
+         for(int start = 0;start<rows * cols;start++){
+            if(field.hasMine(start / cols, start % cols) || field.numAdjacentMines(start / cols, start % cols) != 0
+                  || seen[start] != 0){
+               continue;
+            }
+            int label = field.openingAt(start / cols, start % cols);
+            openings++;
+            int size = 0;
+            java.util.ArrayDeque<Integer> queue = new java.util.ArrayDeque<>();
+            queue.add(start);
+            seen[start] = openings;
+            while(!queue.isEmpty()){
+               int cell = queue.poll();
+               int r = cell / cols;
+               int c = cell % cols;
+               size++;
+               if(field.numAdjacentMines(r,c) != 0){
+                  continue;
+               }
+               if(field.openingAt(r,c) != label){
+                  wrongLabels++;
+               }
+               for(int nr = Math.max(r - 1,0);nr<=Math.min(r + 1,rows - 1);nr++){
+                  for(int nc = Math.max(c - 1,0);nc<=Math.min(c + 1,cols - 1);nc++){
+                     if(seen[nr * cols + nc] != openings){
+                        seen[nr * cols + nc] = openings;
+                        queue.add(nr * cols + nc);
+                     }
+                  }
+               }
+            }
+            if(size != field.openingSize(label)){
+               wrongSizes++;
+            }
+         }
+         if(openings != field.numOpenings()){
+            wrongCounts++;
+         }
+      }
+      Assert(0, wrongCounts, "Number of openings");
+      Assert(0, wrongLabels, "Opening squares labeled alike");
+      Assert(0, wrongSizes, "Opening sizes");
+      
+      MineField moved = new MineField(9,9,1,1L);
+      moved.populateMineField();
+      int before = moved.numOpenings();
+      moved.resetEmpty();
+      Assert(1, moved.numOpenings(), "Openings relabeled after the mines change");
+      AssertTrue(before >= 1, "Openings of a populated field");
+      System.out.println();
+   }
+   
+   public static void main(String[] args) throws InterruptedException{
       
       System.out.println();
       
@@ -66,6 +265,12 @@ public class MineFieldTester{
       testPopulate(oneArg);
       testPopulate(new MineField(4,4,5));
       testPopulate(new MineField(9,9,20));
+      
+      testDensePopulate();
+      testAdjacentCounts();
+      testWideField();
+      testBoardPool();
+      testOpenings();
    }
 
 
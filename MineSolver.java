@@ -0,0 +1,388 @@
+import java.util.Arrays;
+
+/**
+ * MineSolver class Works out which covered squares of a VisibleField are
+ * provably safe and which are provably mines, using only what the player can
+ * see (the numbers on uncovered squares). The player's own guesses are not
+ * trusted: a MINE_GUESS square is just another covered square to the solver.
+ *
+ * Two rules are used. The single-point rule looks at one numbered square: if its
+ * number is already accounted for by known mines, its other covered neighbors are
+ * safe, and if it needs every one of them, they are all mines. The pairwise rule
+ * looks at two numbered squares A and B near each other: if A needs as many more
+ * mines than B as it has covered neighbors that B doesn't share, those
+ * neighbors are all mines and B's unshared neighbors are all safe (this includes
+ * the usual subset rule).
+ *
+ * The solver is incremental. It listens to the field, and only the numbered
+ * squares near squares that changed (or near squares it has just deduced
+ * something about) are looked at again, so the cost of a move depends on the
+ * size of the change, not the size of the board. Deductions are made lazily,
+ * when one of the accessors is called.
+ */
+public class MineSolver implements FieldListener {
+
+   private static final byte UNKNOWN = 0;
+   private static final byte SAFE = 1;
+   private static final byte MINE = 2;
+
+   private VisibleField field;
+   private int numRows;
+   private int numCols;
+   private byte[] knowledge; // what has been deduced about each covered square: UNKNOWN, SAFE or MINE
+   private boolean[] queued; // whether a square is in pending
+   private IntBuffer pending = new IntBuffer(); // numbered squares to look at again
+   private IntBuffer safeSquares = new IntBuffer(); // squares deduced safe, in the order they were found
+   private int nextSafe; // position in safeSquares of the next one to hand out
+   private int numKnownMines;
+
+   // scratch space for the rules, reused so looking at a square allocates nothing
+   private int[] unknownA = new int[8];
+   private int[] unknownB = new int[8];
+   private int[] onlyA = new int[8];
+   private int[] onlyB = new int[8];
+
+   /**
+    * Create a solver for the given field and start listening to it. Whatever is
+    * already uncovered is taken into account.
+    *
+    * @param field the field to solve
+    */
+   public MineSolver(VisibleField field) {
+      this.field = field;
+      this.numRows = field.getMineField().numRows();
+      this.numCols = field.getMineField().numCols();
+      this.knowledge = new byte[numRows * numCols];
+      this.queued = new boolean[numRows * numCols];
+      field.addFieldListener(this);
+      queueAllNumbers();
+   }
+
+   /**
+    * Stops listening to the field. The solver can't be used after this.
+    */
+   public void detach() {
+      field.removeFieldListener(this);
+   }
+
+   /**
+    * Returns the field this solver works on.
+    *
+    * @return the field
+    */
+   public VisibleField getField() {
+      return field;
+   }
+
+   /**
+    * Returns a covered square that is provably safe, or -1 if there isn't one
+    * (that these rules can find). Each safe square is handed out once, so calling
+    * this repeatedly (uncovering each square returned) walks through all of them.
+    *
+    * @return row-major index (row * numCols + col) of a safe covered square, or -1
+    */
+   public int nextSafeSquare() {
+      solve();
+      while (nextSafe < safeSquares.size()) {
+         int square = safeSquares.get(nextSafe++);
+         if (!isOpen(square)) { // may have been opened since it was deduced
+            return square;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Returns whether the square is covered and provably a mine.
+    *
+    * @param row row of the square
+    * @param col col of the square
+    * @return whether it's a known mine PRE: getField().getMineField().inRange(row,
+    *         col)
+    */
+   public boolean isKnownMine(int row, int col) {
+      solve();
+      return knowledge[row * numCols + col] == MINE;
+   }
+
+   /**
+    * Returns whether the square is covered and provably safe.
+    *
+    * @param row row of the square
+    * @param col col of the square
+    * @return whether it's known to be safe PRE:
+    *         getField().getMineField().inRange(row, col)
+    */
+   public boolean isKnownSafe(int row, int col) {
+      solve();
+      int square = row * numCols + col;
+      return knowledge[square] == SAFE && !isOpen(square);
+   }
+
+   /**
+    * Returns the number of squares that are provably mines.
+    *
+    * @return number of known mines
+    */
+   public int numKnownMines() {
+      solve();
+      return numKnownMines;
+   }
+
+   /**
+    * Applies the rules to every square waiting to be looked at, and to every
+    * square that a new deduction affects, until nothing more can be deduced.
+    */
+   public void solve() {
+      for (int i = 0; i < pending.size(); i++) { // pending may grow while we go
+         int square = pending.get(i);
+         queued[square] = false;
+         examine(square);
+      }
+      pending.clear();
+   }
+
+   /**
+    * Queues the numbered squares around the changed squares to be looked at again.
+    */
+   public void squaresChanged(VisibleField changed, int[] cells, int count) {
+      for (int i = 0; i < count; i++) {
+         queueNumbersAround(cells[i]);
+      }
+   }
+
+   /**
+    * Forgets everything, since the whole board changed.
+    */
+   public void fieldReset(VisibleField changed) {
+      Arrays.fill(knowledge, UNKNOWN);
+      Arrays.fill(queued, false);
+      pending.clear();
+      safeSquares.clear();
+      nextSafe = 0;
+      numKnownMines = 0;
+      queueAllNumbers();
+   }
+
+   // <put private methods here>
+   /**
+    * Applies the single-point rule to a numbered square, and then the pairwise
+    * rule to it and each numbered square within two rows and columns of it.
+    *
+    * @param a row-major index of the square
+    */
+   private void examine(int a) {
+      int remainingA = remainingMines(a);
+      int sizeA = unknownNeighbors(a, unknownA);
+      if (remainingA < 0 || sizeA == 0) {
+         return;
+      }
+      if (remainingA == 0) {
+         markAll(unknownA, sizeA, SAFE);
+         return;
+      }
+      if (remainingA == sizeA) {
+         markAll(unknownA, sizeA, MINE);
+         return;
+      }
+      int row = a / numCols;
+      int col = a % numCols;
+      for (int r = Math.max(row - 2, 0); r <= Math.min(row + 2, numRows - 1); r++) {
+         for (int c = Math.max(col - 2, 0); c <= Math.min(col + 2, numCols - 1); c++) {
+            int b = r * numCols + c;
+            if (b != a && isNumber(b) && pairwise(a, remainingA, sizeA, b)) {
+               queue(a); // there may be more to learn about a, even if only b's side changed
+               return;
+            }
+         }
+      }
+   }
+
+   /**
+    * Applies the pairwise rule to numbered squares a and b, in both directions.
+    *
+    * @param a          row-major index of the first square
+    * @param remainingA mines a still needs among its unknown neighbors
+    * @param sizeA      number of unknown neighbors of a (in unknownA)
+    * @param b          row-major index of the second square
+    * @return whether anything was deduced
+    */
+   private boolean pairwise(int a, int remainingA, int sizeA, int b) {
+      int remainingB = remainingMines(b);
+      int sizeB = unknownNeighbors(b, unknownB);
+      if (sizeB == 0) {
+         return false;
+      }
+      int sizeOnlyA = difference(unknownA, sizeA, unknownB, sizeB, onlyA);
+      int sizeOnlyB = difference(unknownB, sizeB, unknownA, sizeA, onlyB);
+      if (sizeOnlyA == sizeA) { // nothing shared, so nothing to learn
+         return false;
+      }
+      if (remainingA - remainingB == sizeOnlyA) {
+         return markAll(onlyA, sizeOnlyA, MINE) | markAll(onlyB, sizeOnlyB, SAFE);
+      }
+      if (remainingB - remainingA == sizeOnlyB) {
+         return markAll(onlyB, sizeOnlyB, MINE) | markAll(onlyA, sizeOnlyA, SAFE);
+      }
+      return false;
+   }
+
+   /**
+    * Records what has been deduced about some squares, and queues the numbered
+    * squares around each newly deduced one.
+    *
+    * @param squares what they are, in the first count entries
+    * @param count   number of squares
+    * @param what    SAFE or MINE
+    * @return whether any of them weren't known before
+    */
+   private boolean markAll(int[] squares, int count, byte what) {
+      boolean changed = false;
+      for (int i = 0; i < count; i++) {
+         int square = squares[i];
+         if (knowledge[square] != UNKNOWN) {
+            continue;
+         }
+         knowledge[square] = what;
+         if (what == MINE) {
+            numKnownMines++;
+         }
+         else {
+            safeSquares.add(square);
+         }
+         queueNumbersAround(square);
+         changed = true;
+      }
+      return changed;
+   }
+
+   /**
+    * Returns how many mines a numbered square still needs among its covered
+    * neighbors that are not yet known mines.
+    *
+    * @param square row-major index of a numbered square
+    * @return its number minus its known-mine neighbors
+    */
+   private int remainingMines(int square) {
+      int row = square / numCols;
+      int col = square % numCols;
+      int remaining = field.getStatus(row, col);
+      for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, numRows - 1); r++) {
+         for (int c = Math.max(col - 1, 0); c <= Math.min(col + 1, numCols - 1); c++) {
+            if (knowledge[r * numCols + c] == MINE && !field.isUncovered(r, c)) {
+               remaining--;
+            }
+         }
+      }
+      return remaining;
+   }
+
+   /**
+    * Collects the covered neighbors of a square that nothing is known about.
+    *
+    * @param square row-major index of the square
+    * @param out    receives the neighbors
+    * @return number of neighbors collected
+    */
+   private int unknownNeighbors(int square, int[] out) {
+      int row = square / numCols;
+      int col = square % numCols;
+      int size = 0;
+      for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, numRows - 1); r++) {
+         for (int c = Math.max(col - 1, 0); c <= Math.min(col + 1, numCols - 1); c++) {
+            int neighbor = r * numCols + c;
+            if (knowledge[neighbor] == UNKNOWN && !field.isUncovered(r, c)) {
+               out[size++] = neighbor;
+            }
+         }
+      }
+      return size;
+   }
+
+   /**
+    * Collects the squares of one small set that aren't in another.
+    *
+    * @param from   the first set, in the first fromSize entries
+    * @param fromSize size of the first set
+    * @param minus  the second set, in the first minusSize entries
+    * @param minusSize size of the second set
+    * @param out    receives from minus minus
+    * @return size of the result
+    */
+   private static int difference(int[] from, int fromSize, int[] minus, int minusSize, int[] out) {
+      int size = 0;
+      outer: for (int i = 0; i < fromSize; i++) {
+         for (int j = 0; j < minusSize; j++) {
+            if (from[i] == minus[j]) {
+               continue outer;
+            }
+         }
+         out[size++] = from[i];
+      }
+      return size;
+   }
+
+   /**
+    * Queues the square and its neighbors, if they are numbered squares.
+    *
+    * @param square row-major index of the square
+    */
+   private void queueNumbersAround(int square) {
+      int row = square / numCols;
+      int col = square % numCols;
+      for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, numRows - 1); r++) {
+         for (int c = Math.max(col - 1, 0); c <= Math.min(col + 1, numCols - 1); c++) {
+            queue(r * numCols + c);
+         }
+      }
+   }
+
+   /**
+    * Queues a square to be looked at again, if it's a numbered square and isn't
+    * queued already.
+    *
+    * @param square row-major index of the square
+    */
+   private void queue(int square) {
+      if (!queued[square] && isNumber(square)) {
+         queued[square] = true;
+         pending.add(square);
+      }
+   }
+
+   /**
+    * Queues every numbered square on the board. Only used when the solver starts
+    * over.
+    */
+   private void queueAllNumbers() {
+      for (int square = 0; square < knowledge.length; square++) {
+         if (isNumber(square)) {
+            queued[square] = true;
+            pending.add(square);
+         }
+      }
+   }
+
+   /**
+    * Returns whether a square is uncovered and shows a number of adjacent mines
+    * that is not 0 (an empty square has nothing left to tell).
+    *
+    * @param square row-major index of the square
+    * @return whether it's a numbered square
+    */
+   private boolean isNumber(int square) {
+      int status = field.getStatus(square / numCols, square % numCols);
+      return status > 0 && status < VisibleField.MINE;
+   }
+
+   /**
+    * Returns whether a square is uncovered.
+    *
+    * @param square row-major index of the square
+    * @return whether it's uncovered
+    */
+   private boolean isOpen(int square) {
+      return field.isUncovered(square / numCols, square % numCols);
+   }
+
+}
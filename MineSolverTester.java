@@ -0,0 +1,281 @@
+public class MineSolverTester{
+
+   private static void Assert(int expected, int actual, String name){
+      System.out.printf("%s - expected: %d actual: %d -- %s\n",name,expected,actual,(expected == actual ? "PASSED" : "FAILED"));
+   }
+   private static void AssertTrue(boolean actual, String name){
+      System.out.printf("%s - expected: true actual: %b -- %s\n",name,actual,(actual ? "PASSED" : "FAILED"));
+   }
+   
+   private static void AssertFalse(boolean actual, String name){
+      System.out.printf("%s - expected: false actual: %b -- %s\n",name,actual,(!actual ? "PASSED" : "FAILED"));
+   }
+   
+   private static void testSimpleDeductions(){
+      System.out.println("Testing Simple Deductions");
+      boolean [][] testData = {{false, false, false, false},
+                               {false, false, false, false},
+                               {true, true, false, false},
+                               {false, false, false, false}};
+      VisibleField field = new VisibleField(new MineField(testData));
+      MineSolver solver = new MineSolver(field);
+      field.uncover(0,3);
+      // row 1 shows 2 2 1 0, so (2,0) and (2,1) are mines and (2,2) is safe
+      AssertTrue(solver.isKnownMine(2,0), "Mine at 2,0 deduced");
+      AssertTrue(solver.isKnownMine(2,1), "Mine at 2,1 deduced");
+      AssertFalse(solver.isKnownMine(2,2), "No mine at 2,2");
+      AssertTrue(solver.isKnownSafe(2,2) || field.isUncovered(2,2), "2,2 known safe");
+      Assert(2, solver.numKnownMines(), "Known mines");
+      System.out.println();
+   }
+   
+   private static void testSoundAndComplete(){
+      System.out.println("Testing Solver On Random Boards");
+      int wrong = 0;
+      int won = 0;
+      int games = 500;
+      for(int game = 0;game<games;game++){
+         MineField mineField = new MineField(9,9,10,game);
+         mineField.populateMineField(4,4);
+         VisibleField field = new VisibleField(mineField);
+         MineSolver solver = new MineSolver(field);
+         field.uncover(4,4);
+         int square = solver.nextSafeSquare();
+         while(square >= 0 && !field.isGameOver()){
+            if(mineField.hasMine(square / 9, square % 9)){
+               wrong++;
+            }
+            field.uncover(square / 9, square % 9);
+            square = solver.nextSafeSquare();
+         }
+         for(int r = 0;r<9;r++){
+            for(int c = 0;c<9;c++){
+               if(solver.isKnownMine(r,c) && !mineField.hasMine(r,c)){
+                  wrong++;
+               }
+            }
+         }
+         if(field.isGameOver()){
+            won++;
+         }
+      }
+      Assert(0, wrong, "Deductions are never wrong");
+      AssertTrue(won > games / 4, "Solver wins a good share of beginner games (" + won + "/" + games + ")");
+      System.out.println();
+   }
+   
+   // counts, over every way to place the mines on the covered squares that agrees with the numbers, how often
+   // each square has a mine; squares[] lists the covered squares and chosen[] marks the ones picked so far
+   private static int bruteForce(VisibleField field, int[] squares, int next, int minesLeft, boolean[] chosen, int[] hits){
+      MineField mineField = field.getMineField();
+      int cols = mineField.numCols();
+      if(minesLeft == 0 || next == squares.length){
+         if(minesLeft > 0){
+            return 0;
+         }
+         for(int r = 0;r<mineField.numRows();r++){
+            for(int c = 0;c<cols;c++){
+               int status = field.getStatus(r,c);
+               if(status < 0 || status > 8){
+                  continue;
+               }
+               int count = 0;
+               for(int nr = r-1;nr<=r+1;nr++){
+                  for(int nc = c-1;nc<=c+1;nc++){
+                     if(mineField.inRange(nr,nc) && chosen[nr*cols + nc]){
+                        count++;
+                     }
+                  }
+               }
+               if(count != status){
+                  return 0;
+               }
+            }
+         }
+         for(int i = 0;i<chosen.length;i++){
+            if(chosen[i]){
+               hits[i]++;
+            }
+         }
+         return 1;
+      }
+      chosen[squares[next]] = true;
+      int total = bruteForce(field, squares, next + 1, minesLeft - 1, chosen, hits);
+      chosen[squares[next]] = false;
+      return total + bruteForce(field, squares, next + 1, minesLeft, chosen, hits);
+   }
+   
+   private static void testExactProbabilities(){
+      System.out.println("Testing Exact Probabilities");
+      ProbabilityEngine engine = new ProbabilityEngine();
+      ProbabilityEngine sweeping = new ProbabilityEngine(java.util.concurrent.ForkJoinPool.commonPool(), 0, 0);
+      int wrong = 0;
+      int wrongSwept = 0;
+      for(int game = 0;game<40;game++){
+         MineField mineField = new MineField(5,6,6,game);
+         mineField.populateMineField(2,2);
+         VisibleField field = new VisibleField(mineField);
+         field.uncover(2,2);
+         if(field.isGameOver()){
+            continue;
+         }
+         int[] squares = new int[30];
+         int numSquares = 0;
+         for(int i = 0;i<30;i++){
+            if(!field.isUncovered(i / 6, i % 6)){
+               squares[numSquares++] = i;
+            }
+         }
+         int[] hits = new int[30];
+         int total = bruteForce(field, java.util.Arrays.copyOf(squares, numSquares), 0, 6, new boolean[30], hits);
+         double[] probabilities = engine.mineProbabilities(field);
+         double[] swept = sweeping.mineProbabilities(field);
+         for(int i = 0;i<30;i++){
+            if(Math.abs(probabilities[i] - (double) hits[i] / total) > 1e-9){
+               wrong++;
+            }
+            if(Math.abs(swept[i] - (double) hits[i] / total) > 1e-9){
+               wrongSwept++;
+            }
+         }
+      }
+      Assert(0, wrong, "Probabilities match brute force");
+      Assert(0, wrongSwept, "Swept probabilities match brute force");
+      System.out.println();
+   }
+   
+   // a board whose top row is uncovered, with at least one mine below every square of it, so the second row is
+   // one long frontier
+   private static VisibleField longFrontier(int cols, long seed){
+      java.util.Random random = new java.util.Random(seed);
+      boolean[][] mines = new boolean[4][cols];
+      for(int c = 0;c<cols;c++){
+         mines[1][c] = c % 3 == 1 || random.nextInt(4) == 0;
+         mines[2][c] = random.nextInt(4) == 0;
+         mines[3][c] = random.nextInt(4) == 0;
+      }
+      VisibleField field = new VisibleField(new MineField(mines));
+      for(int c = 0;c<cols;c++){
+         field.uncover(0,c);
+      }
+      return field;
+   }
+   
+   private static void testLongFrontier(){
+      System.out.println("Testing Long Frontier");
+      ProbabilityEngine engine = new ProbabilityEngine();
+      ProbabilityEngine sweeping = new ProbabilityEngine(java.util.concurrent.ForkJoinPool.commonPool(), 0, 0);
+      int wrong = 0;
+      for(int seed = 0;seed<10;seed++){
+         VisibleField field = longFrontier(30, seed);   // short enough to search
+         double[] expected = engine.mineProbabilities(field);
+         double[] actual = sweeping.mineProbabilities(field);
+         for(int i = 0;i<expected.length;i++){
+            if(Math.abs(expected[i] - actual[i]) > 1e-9){
+               wrong++;
+            }
+         }
+      }
+      Assert(0, wrong, "Swept probabilities match searched ones");
+      VisibleField field = longFrontier(2000, 99);
+      long start = System.nanoTime();
+      double[] probabilities = engine.mineProbabilities(field);
+      long millis = (System.nanoTime() - start) / 1_000_000;
+      double expectedMines = 0;
+      int impossible = 0;
+      for(double probability : probabilities){
+         expectedMines += probability;
+         if(!(probability >= 0 && probability <= 1)){
+            impossible++;
+         }
+      }
+      Assert(0, impossible, "Long frontier probabilities are probabilities");
+      AssertTrue(Math.abs(expectedMines - field.getMineField().numMines()) < 1e-6, "Long frontier expects every mine: " + expectedMines);
+      AssertTrue(millis < 5000, "Long frontier counted in " + millis + " ms");
+      System.out.println();
+   }
+   
+   private static void testCachedProbabilities(){
+      System.out.println("Testing Cached Probabilities");
+      ProbabilityEngine plain = new ProbabilityEngine();
+      ProbabilityEngine cached = new ProbabilityEngine(java.util.concurrent.ForkJoinPool.commonPool(), 1000);
+      int wrong = 0;
+      for(int round = 0;round<2;round++){   // the second round finds every pattern in the cache
+         for(int game = 0;game<40;game++){
+            MineField mineField = new MineField(16,16,40,game);
+            mineField.populateMineField(8,8);
+            VisibleField field = new VisibleField(mineField);
+            field.uncover(8,8);
+            double[] expected = plain.mineProbabilities(field);
+            double[] actual = cached.mineProbabilities(field);
+            for(int i = 0;i<expected.length;i++){
+               if(Math.abs(expected[i] - actual[i]) > 1e-9){
+                  wrong++;
+               }
+            }
+         }
+      }
+      Assert(0, wrong, "Cached probabilities match");
+      AssertTrue(cached.getCache().numHits() > 0, "Patterns found in cache");
+      System.out.println();
+   }
+   
+   private static void testNoGuessGenerator(){
+      System.out.println("Testing No-Guess Generator");
+      MineField around = new MineField(9,9,10,7);
+      around.populateMineFieldAround(0,4);
+      int blockMines = 0;
+      int mines = 0;
+      for(int r = 0;r<9;r++){
+         for(int c = 0;c<9;c++){
+            if(around.hasMine(r,c)){
+               mines++;
+               if(r <= 1 && c >= 3 && c <= 5){
+                  blockMines++;
+               }
+            }
+         }
+      }
+      Assert(10, mines, "Mines placed around first square");
+      Assert(0, blockMines, "No mines next to first square");
+      NoGuessGenerator generator = new NoGuessGenerator(2, 2000, 11);
+      int unsolved = 0;
+      for(int game = 0;game<20;game++){
+         MineField mineField = new MineField(16,30,99);
+         if(!generator.populate(mineField, 8, 15)){
+            continue;   // ran out of time, which is allowed
+         }
+         VisibleField field = new VisibleField(mineField);
+         MineSolver solver = new MineSolver(field);
+         field.uncover(8,15);
+         int square = solver.nextSafeSquare();
+         while(square >= 0 && !field.isGameOver()){
+            field.uncover(square / 30, square % 30);
+            square = solver.nextSafeSquare();
+         }
+         if(!field.isGameOver() || mineField.hasMine(8,15)){
+            unsolved++;
+         }
+      }
+      generator.shutdown();
+      Assert(0, unsolved, "Generated expert boards solvable without guessing");
+      
+      NoGuessGenerator hurried = new NoGuessGenerator(2, 20, 12);
+      long start = System.nanoTime();
+      boolean noGuess = hurried.populate(new MineField(1500,1500,100000), 750, 750);   // each candidate takes far longer
+      long millis = (System.nanoTime() - start) / 1_000_000;
+      AssertFalse(noGuess, "Falls back when out of time");
+      AssertTrue(millis < 1000, "Falls back within budget: " + millis + " ms");
+      hurried.shutdown();
+      System.out.println();
+   }
+   
+   public static void main(String[] args){
+      testSimpleDeductions();
+      testSoundAndComplete();
+      testExactProbabilities();
+      testLongFrontier();
+      testCachedProbabilities();
+      testNoGuessGenerator();
+   }
+}
@@ -5,9 +5,17 @@
    
    To run it from the command line: 
       java MineSweeper
+   or, to record every game played to a replay file (see ReplayWriter and ReplayReader):
+      java MineSweeper replayFile
+   or, for games that can always be won without guessing (see NoGuessGenerator), with or without a replay file:
+      java MineSweeper -noguess [replayFile]
       
  */
 
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Paths;
 import javax.swing.JFrame;
 
 public class MineSweeper {
@@ -19,7 +27,7 @@ public class MineSweeper {
    private static int NUM_MINES = 10;       
    
 
-   public static void main(String[] args) {
+   public static void main(String[] args) throws IOException {
 
       JFrame frame = new JFrame();
 
@@ -27,15 +35,42 @@ public class MineSweeper {
 
       frame.setSize(FRAME_WIDTH, FRAME_HEIGHT);
 
-      GameBoardPanel gameBoard = new GameBoardPanel(SIDE_LENGTH, SIDE_LENGTH, NUM_MINES);
+      boolean noGuess = args.length > 0 && args[0].equals("-noguess");
+      int nextArg = noGuess ? 1 : 0;
+
+      GameBoardPanel gameBoard = new GameBoardPanel(SIDE_LENGTH, SIDE_LENGTH, NUM_MINES, noGuess);
 
       frame.add(gameBoard);
 
+      if (args.length > nextArg) {
+         ReplayWriter replay = new ReplayWriter(Paths.get(args[nextArg]));
+         replay.attach(gameBoard.getVisibleField());
+         frame.addWindowListener(new WindowAdapter() {   // writes out the game in progress, on the event thread
+            public void windowClosing(WindowEvent e) {
+               closeReplay(replay);
+            }
+         });
+         Runtime.getRuntime().addShutdownHook(new Thread(() -> closeReplay(replay)));   // for other ways out
+      }
+
       frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
       frame.setVisible(true);
 
    }
 
+   /**
+      Closes the replay file, if it isn't closed already, reporting any error.
+      @param replay  the replay being recorded
+    */
+   private static void closeReplay(ReplayWriter replay) {
+      try {
+         replay.close();
+      }
+      catch (IOException e) {
+         System.err.println("Couldn't write replay file: " + e.getMessage());
+      }
+   }
+
 }
 
@@ -0,0 +1,184 @@
+import java.lang.management.ManagementFactory;
+import java.util.function.IntSupplier;
+import java.util.stream.IntStream;
+
+/**
+   ModelBenchmark -- measures the hot paths of the game model (MineField and VisibleField) so that performance
+   changes to them can be checked for regressions.
+
+   For every board size it reports, per benchmark, the number of operations per second and the number of bytes
+   allocated per operation (measured with the per-thread allocation counter of the JVM, like JMH's gc profiler).
+   Each benchmark is warmed up before it is measured.
+
+   To run it from the command line (after compiling all the .java files):
+      java ModelBenchmark                 runs every benchmark on every board size
+      java ModelBenchmark uncover         only runs benchmarks whose name contains "uncover"
+      java ModelBenchmark uncover 1000    ... and only on boards of at most 1000 x 1000
+ */
+public class ModelBenchmark {
+
+   private static final int[] SIDE_LENGTHS = { 9, 100, 1000, 4000 };
+   private static final double[] DENSITIES = { 0.1, 0.2, 0.5, 0.9 };
+
+   private static final long WARMUP_NANOS = 500_000_000L;
+   private static final long MEASURE_NANOS = 1_000_000_000L;
+
+   private static final com.sun.management.ThreadMXBean THREADS =
+         (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+   private static volatile long sink;  // results go here so the JIT can't drop the work that made them
+
+
+   public static void main(String[] args) {
+      String filter = (args.length > 0) ? args[0] : "";
+      int maxSide = (args.length > 1) ? Integer.parseInt(args[1]) : Integer.MAX_VALUE;
+
+      System.out.printf("%-28s %12s %16s %14s%n", "benchmark", "board", "ops/sec", "bytes/op");
+      for (int side : SIDE_LENGTHS) {
+         if (side <= maxSide) {
+            runBoard(side, filter);
+         }
+      }
+   }
+
+
+   /**
+      Run all the benchmarks matching the filter on a side x side board.
+    * @param side  number of rows and columns of the board
+    * @param filter  only benchmarks whose name contains this are run
+    */
+   private static void runBoard(int side, String filter) {
+      for (double density : DENSITIES) {
+         int numMines = Math.min((int) (side * side * density), side * side - 1);
+         MineField mineField = new MineField(side, side, numMines, 1L);
+         run("populateMineField@" + density, side, filter, () -> {
+            mineField.populateMineField(side / 2, side / 2);
+            return mineField.numMines();
+         });
+      }
+
+      MineField expert = new MineField(side, side, (int) (side * side * 0.2), 2L);  // about expert density
+      expert.populateMineField(0, 0);
+      run("numAdjacentMines", side, filter, () -> {
+         int total = 0;
+         for (int row = 0; row < side; row++) {
+            for (int col = 0; col < side; col++) {
+               total += expert.numAdjacentMines(row, col);
+            }
+         }
+         return total;
+      });
+
+      // worst case flood fill: a single mine in a corner, so one click opens the whole rest of the board
+      boolean[][] oneMine = new boolean[side][side];
+      oneMine[side - 1][side - 1] = true;
+      VisibleField floodField = new VisibleField(new MineField(oneMine));
+      run("uncover (full flood)", side, filter, () -> {
+         floodField.resetGameDisplay();
+         floodField.uncover(0, 0);
+         return floodField.numLastUncovered();
+      });
+
+      // the same flood with its undo history recorded, then undone
+      VisibleField undoField = new VisibleField(new MineField(oneMine));
+      undoField.setUndoEnabled(true);
+      run("uncover+undo (full flood)", side, filter, () -> {
+         undoField.uncover(0, 0);
+         undoField.undo();
+         return undoField.numMinesLeft();
+      });
+
+      // the same flood opened by a player per core at once on a shared board, starting from spread out squares
+      ConcurrentVisibleField coopField = new ConcurrentVisibleField(new MineField(oneMine));
+      int players = Runtime.getRuntime().availableProcessors();
+      run("co-op uncover (full flood)", side, filter, () -> {
+         coopField.resetGameDisplay();
+         IntStream.range(0, players).parallel()
+               .forEach(player -> coopField.uncover(side * player / players, side * player / players));
+         return coopField.numSafeSquaresOpened();
+      });
+
+      VisibleField expertField = new VisibleField(expert);
+      expertField.uncover(0, 0);
+      run("isGameOver", side, filter, () -> expertField.isGameOver() ? 1 : 0);
+
+      run("resetGameDisplay", side, filter, () -> {
+         expertField.resetGameDisplay();
+         return expertField.numMinesLeft();
+      });
+
+      MineField scripted = new MineField(side, side, (int) (side * side * 0.2), 3L);
+      VisibleField scriptedField = new VisibleField(scripted);
+      run("scripted game", side, filter, () -> playScriptedGame(scriptedField));
+   }
+
+
+   /**
+      Play a whole game that the player wins: place the mines, then open every square without a mine (in
+      row-major order) and flag every mine.
+    * @param field  the field to play on; its minefield is repopulated
+    * @return number of moves made
+    */
+   private static int playScriptedGame(VisibleField field) {
+      MineField mineField = field.getMineField();
+      field.resetGameDisplay();
+      mineField.populateMineField(0, 0);
+      int moves = 0;
+      for (int row = 0; row < mineField.numRows() && !field.isGameOver(); row++) {
+         for (int col = 0; col < mineField.numCols() && !field.isGameOver(); col++) {
+            if (mineField.hasMine(row, col)) {
+               field.cycleGuess(row, col);
+               moves++;
+            }
+            else if (!field.isUncovered(row, col)) {
+               field.uncover(row, col);
+               moves++;
+            }
+         }
+      }
+      return moves;
+   }
+
+
+   /**
+      Warm up, then measure, one benchmark and print its results.
+    * @param name  name of the benchmark
+    * @param side  side length of the board, for the report
+    * @param filter  the benchmark is skipped unless its name contains this
+    * @param operation  one operation of the benchmark
+    */
+   private static void run(String name, int side, String filter, IntSupplier operation) {
+      if (!name.contains(filter)) {
+         return;
+      }
+      loop(operation, WARMUP_NANOS);
+      long threadId = Thread.currentThread().getId();
+      long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+      long start = System.nanoTime();
+      long ops = loop(operation, MEASURE_NANOS);
+      long elapsed = System.nanoTime() - start;
+      long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+      System.out.printf("%-28s %12s %16.1f %14.1f%n", name, side + "x" + side, ops * 1e9 / elapsed,
+                        (double) allocated / ops);
+   }
+
+
+   /**
+      Run an operation over and over for (at least) the given time, and at least once.
+    * @param operation  the operation to run
+    * @param nanos  how long to keep running it
+    * @return number of times it ran
+    */
+   private static long loop(IntSupplier operation, long nanos) {
+      long end = System.nanoTime() + nanos;
+      long ops = 0;
+      long result = 0;
+      do {
+         result += operation.getAsInt();
+         ops++;
+      } while (System.nanoTime() < end);
+      sink = result;
+      return ops;
+   }
+
+}
@@ -0,0 +1,27 @@
+import java.util.SplittableRandom;
+
+/**
+ * MoveStrategy interface
+ * Decides which square to open next in a game played without the GUI (see SimulationRunner). A strategy
+ * object is only ever used by one thread, so it may keep state between moves; SimulationRunner makes one
+ * strategy per thread and uses it for every game that thread plays, on the same VisibleField.
+ */
+public interface MoveStrategy {
+
+   /**
+    * Called before the first move of every game, after the field has been reset (all squares covered).
+    * 
+    * @param field the field the game is played on
+    */
+   void newGame(VisibleField field);
+
+   /**
+    * Returns the next square to uncover. For the first move of a game the mines have not been placed yet;
+    * the runner places them afterwards so that the chosen square is safe.
+    * 
+    * @param field  the field the game is played on
+    * @param random random numbers for this thread, for strategies that need them
+    * @return row-major index (row * numCols + col) of a covered square that is not a MINE_GUESS
+    */
+   int nextMove(VisibleField field, SplittableRandom random);
+}
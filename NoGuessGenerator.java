@@ -0,0 +1,179 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * NoGuessGenerator class Places mines so that a game can be won by logic alone
+ * from the first square opened, i.e. the player never has to guess. Candidate
+ * minefields are generated with no mines around the first square, and each one
+ * is played out with a MineSolver from that square; a candidate passes if the
+ * solver wins it.
+ *
+ * Several candidates are generated and tested at once on worker threads, and the
+ * first one to pass is used. Generation has a time budget: if no candidate has
+ * passed when it runs out, the minefield is populated the ordinary way (only the
+ * first square is guaranteed safe), so a player never waits much longer than the
+ * budget. Either way the workers still searching are then interrupted, so they
+ * stop partway through the candidate they're testing rather than at its end.
+ */
+public class NoGuessGenerator {
+
+   public static final long DEFAULT_BUDGET_MILLIS = 50;
+
+   private final ExecutorService workers;
+   private final int numWorkers;
+   private final long budgetNanos;
+   private final SplittableRandom seeds;
+
+   /**
+    * Create a generator with one worker per core and the default time budget.
+    */
+   public NoGuessGenerator() {
+      this(Runtime.getRuntime().availableProcessors(), DEFAULT_BUDGET_MILLIS, System.nanoTime());
+   }
+
+   /**
+    * Create a generator.
+    *
+    * @param numWorkers   number of candidates to work on at once, must be positive
+    * @param budgetMillis how long populate may spend looking for a no-guess
+    *                     minefield before falling back
+    * @param seed         seed the workers' random numbers are split from
+    */
+   public NoGuessGenerator(int numWorkers, long budgetMillis, long seed) {
+      this.numWorkers = numWorkers;
+      this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+      this.seeds = new SplittableRandom(seed);
+      this.workers = Executors.newFixedThreadPool(numWorkers, task -> {
+         Thread thread = new Thread(task, "no-guess generator");
+         thread.setDaemon(true); // never keeps the program running
+         return thread;
+      });
+   }
+
+   /**
+    * Places mineField.numMines() mines on the minefield so that (row, col) is
+    * safe and, if one is found within the time budget, so that the game can be
+    * won from (row, col) without guessing.
+    *
+    * @param mineField the minefield to populate
+    * @param row       row of the first square the player opens
+    * @param col       column of the first square the player opens
+    * @return whether the minefield is a no-guess one (false means the time budget
+    *         ran out and it was populated the ordinary way)
+    */
+   public boolean populate(MineField mineField, int row, int col) {
+      long deadline = System.nanoTime() + budgetNanos;
+      CompletableFuture<MineField> winner = new CompletableFuture<>();
+      List<Future<?>> searches = new ArrayList<>(numWorkers);
+      for (int i = 0; i < numWorkers; i++) {
+         long seed = nextSeed();
+         searches.add(workers.submit(() -> search(mineField, row, col, seed, deadline, winner)));
+      }
+      MineField found = null;
+      try {
+         found = winner.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+      }
+      catch (TimeoutException e) {
+         // fall back below
+      }
+      catch (Exception e) {
+         throw new IllegalStateException(e);
+      }
+      finally {
+         winner.complete(null); // tells the workers to stop if nobody won
+         for (Future<?> search : searches) {
+            search.cancel(true); // interrupts the ones still testing a candidate
+         }
+      }
+      if (found == null) {
+         mineField.populateMineField(row, col);
+         return false;
+      }
+      mineField.copyMinesFrom(found);
+      return true;
+   }
+
+   /**
+    * Stops the worker threads. The generator can't be used after this.
+    */
+   public void shutdown() {
+      workers.shutdownNow();
+   }
+
+   // <put private methods here>
+   /**
+    * Generates and tests candidates until one passes, another worker's candidate
+    * passes, the deadline comes, or the worker is interrupted.
+    *
+    * @param template the minefield being populated (only its dimensions and
+    *                 number of mines are used)
+    * @param row      row of the first square
+    * @param col      column of the first square
+    * @param seed     seed for this worker's candidates
+    * @param deadline System.nanoTime() after which to give up
+    * @param winner   completed with the first candidate that passes
+    */
+   private static void search(MineField template, int row, int col, long seed, long deadline,
+         CompletableFuture<MineField> winner) {
+      int numRows = template.numRows();
+      int numCols = template.numCols();
+      MineField candidate = new MineField(numRows, numCols, template.numMines(), seed);
+      VisibleField field = new VisibleField(candidate);
+      MineSolver solver = new MineSolver(field);
+      int blockSize = (Math.min(row + 1, numRows - 1) - Math.max(row - 1, 0) + 1)
+            * (Math.min(col + 1, numCols - 1) - Math.max(col - 1, 0) + 1);
+      boolean clearAround = template.numMines() <= numRows * numCols - blockSize;
+      while (!winner.isDone() && System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+         field.resetGameDisplay();
+         if (clearAround) {
+            candidate.populateMineFieldAround(row, col);
+         }
+         else {
+            candidate.populateMineField(row, col);
+         }
+         if (isSolvable(field, solver, row, col)) {
+            winner.complete(candidate);
+            return;
+         }
+      }
+   }
+
+   /**
+    * Plays a game on a freshly populated field, opening only squares the solver
+    * proves safe, and returns whether that wins it. Gives up (returning false) if
+    * the worker is interrupted.
+    *
+    * @param field  the field, with every square covered
+    * @param solver a solver listening to the field
+    * @param row    row of the first square
+    * @param col    column of the first square
+    * @return whether the game was won without guessing
+    */
+   private static boolean isSolvable(VisibleField field, MineSolver solver, int row, int col) {
+      int numCols = field.getMineField().numCols();
+      field.uncover(row, col);
+      int square = solver.nextSafeSquare();
+      while (square >= 0 && !field.isGameOver() && !Thread.currentThread().isInterrupted()) {
+         field.uncover(square / numCols, square % numCols);
+         square = solver.nextSafeSquare();
+      }
+      return field.isGameOver(); // the solver only opens safe squares, so game over means won
+   }
+
+   /**
+    * Returns a seed for a worker, split from the generator's seed.
+    *
+    * @return a new seed
+    */
+   private synchronized long nextSeed() {
+      return seeds.nextLong();
+   }
+
+}
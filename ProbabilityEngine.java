@@ -0,0 +1,871 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ProbabilityEngine class Computes the exact probability that each covered
+ * square of a VisibleField has a mine, given what the player can see: the
+ * numbers on uncovered squares and the total number of mines in the MineField.
+ * It's what to fall back on when MineSolver can't find a provably safe square.
+ *
+ * The covered squares next to numbers (the frontier) are split into connected
+ * components, where two squares are connected if some number constrains both.
+ * Each component's mine configurations that agree with the numbers are counted
+ * by a backtracking search with pruning; the components are searched in parallel
+ * on a ForkJoinPool, and the first levels of large searches are forked as well.
+ * A search takes time exponential in the size of its component, so components
+ * of more than SEARCH_MAX_VARIABLES squares (long frontiers, in large endgames)
+ * are counted by a sweep over their squares instead (see Sweep), which takes
+ * time polynomial in their size and exponential only in how many numbers are
+ * half-assigned at once, which is small along a frontier.
+ * The components don't affect each other except through the total number of
+ * mines, so their counts (by number of mines) are combined by convolution and
+ * weighted by the number of ways to place the remaining mines on the covered
+ * squares away from the frontier (the interior).
+ *
+ * All counts are kept as doubles, rescaled as they are combined, so only ratios
+ * are meaningful, and the results are exact up to floating point rounding.
+ *
+ * An engine can be given a TranspositionCache of component counts. A component's
+ * counts depend only on the pattern of squares around it, not on where it is, so
+ * they are keyed by the window hash of its bounding box (VisibleField.windowHash)
+ * and reused whenever the same pattern comes up again, in this position or any
+ * other.
+ */
+public class ProbabilityEngine {
+
+   private static final int SPLIT_DEPTH = 6; // fork the search at this many of the first levels...
+   private static final int SPLIT_MIN_VARIABLES = 24; // ... of components with at least this many squares
+   static final int SEARCH_MAX_VARIABLES = 40; // larger components are swept, not searched
+
+   private final ForkJoinPool pool;
+   private final TranspositionCache<Counts> cache; // null if the counts aren't cached
+   private final int searchMaxVariables;
+
+   /**
+    * Create an engine that runs its searches on the common ForkJoinPool.
+    */
+   public ProbabilityEngine() {
+      this(ForkJoinPool.commonPool());
+   }
+
+   /**
+    * Create an engine that runs its searches on the given pool.
+    *
+    * @param pool the pool to search on
+    */
+   public ProbabilityEngine(ForkJoinPool pool) {
+      this(pool, 0);
+   }
+
+   /**
+    * Create an engine that runs its searches on the given pool, and caches the
+    * counts of up to cacheSize frontier patterns.
+    *
+    * @param pool      the pool to search on
+    * @param cacheSize most patterns to cache, 0 for no cache
+    */
+   public ProbabilityEngine(ForkJoinPool pool, int cacheSize) {
+      this(pool, cacheSize, SEARCH_MAX_VARIABLES);
+   }
+
+   /**
+    * Create an engine that searches components of up to searchMaxVariables
+    * squares, and sweeps larger ones. For comparing the two.
+    *
+    * @param pool               the pool to search on
+    * @param cacheSize          most patterns to cache, 0 for no cache
+    * @param searchMaxVariables largest component to search
+    */
+   ProbabilityEngine(ForkJoinPool pool, int cacheSize, int searchMaxVariables) {
+      this.pool = pool;
+      this.cache = (cacheSize > 0) ? new TranspositionCache<>(cacheSize) : null;
+      this.searchMaxVariables = searchMaxVariables;
+   }
+
+   /**
+    * Returns the cache of frontier patterns, to look at its hit rate.
+    *
+    * @return the cache, or null if this engine has none
+    */
+   public TranspositionCache<?> getCache() {
+      return cache;
+   }
+
+   /**
+    * Returns the probability that each square has a mine. Uncovered squares get
+    * 0. If the numbers on the board can't all be satisfied (which can't happen in
+    * a real game), every covered square gets NaN.
+    *
+    * @param field the field to look at
+    * @return row-major array (index row * numCols + col) of mine probabilities
+    */
+   public double[] mineProbabilities(VisibleField field) {
+      MineField mineField = field.getMineField();
+      int numRows = mineField.numRows();
+      int numCols = mineField.numCols();
+      double[] probabilities = new double[numRows * numCols];
+
+      // find the constraints (uncovered squares next to covered ones) and the frontier squares they constrain
+      int[] variableOf = new int[numRows * numCols]; // square -> frontier number, or -1
+      Arrays.fill(variableOf, -1);
+      IntBuffer frontier = new IntBuffer();
+      IntBuffer constraints = new IntBuffer();
+      IntBuffer parent = new IntBuffer(); // union-find over frontier numbers
+      int numCovered = 0;
+      for (int square = 0; square < numRows * numCols; square++) {
+         int row = square / numCols;
+         int col = square % numCols;
+         int status = field.getStatus(row, col);
+         if (status < 0) {
+            numCovered++;
+            continue;
+         }
+         if (status >= VisibleField.MINE) { // the game is over; nothing left to work out
+            continue;
+         }
+         int first = -1;
+         for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, numRows - 1); r++) {
+            for (int c = Math.max(col - 1, 0); c <= Math.min(col + 1, numCols - 1); c++) {
+               int neighbor = r * numCols + c;
+               if (field.isUncovered(r, c)) {
+                  continue;
+               }
+               if (variableOf[neighbor] < 0) {
+                  variableOf[neighbor] = frontier.size();
+                  parent.add(frontier.size());
+                  frontier.add(neighbor);
+               }
+               if (first < 0) {
+                  first = variableOf[neighbor];
+                  constraints.add(square);
+               }
+               else {
+                  union(parent, first, variableOf[neighbor]);
+               }
+            }
+         }
+      }
+
+      int totalMines = mineField.numMines();
+      int numInterior = numCovered - frontier.size();
+      List<Component> components = buildComponents(field, frontier, constraints, parent, variableOf);
+      if (cache != null) {
+         for (Component component : components) {
+            component.pattern = patternHash(field, component);
+         }
+      }
+
+      // count each component's configurations (unless they're cached), all components at once
+      List<ForkJoinTask<Counts>> tasks = new ArrayList<>();
+      List<Counts> results = new ArrayList<>();
+      for (Component component : components) {
+         Counts cached = (cache == null) ? null : cache.get(component.pattern);
+         boolean usable = cached != null && cached.configurations.length == component.squares.length + 1;
+         results.add(usable ? cached : null);
+         if (usable) {
+            tasks.add(null);
+         }
+         else if (component.squares.length > searchMaxVariables) {
+            tasks.add(pool.submit(() -> new Sweep(component).count()));
+         }
+         else {
+            tasks.add(pool.submit(new SearchTask(component)));
+         }
+      }
+      List<double[]> distributions = new ArrayList<>();
+      for (int j = 0; j < components.size(); j++) {
+         if (results.get(j) == null) {
+            results.set(j, tasks.get(j).join());
+            if (cache != null) {
+               cache.put(components.get(j).pattern, results.get(j));
+            }
+         }
+         distributions.add(results.get(j).configurations);
+      }
+
+      // prefix[j] combines components before j, suffix[j] combines components from j on
+      int numComponents = components.size();
+      double[][] prefix = new double[numComponents + 1][];
+      double[][] suffix = new double[numComponents + 1][];
+      prefix[0] = new double[] { 1 };
+      suffix[numComponents] = new double[] { 1 };
+      for (int j = 0; j < numComponents; j++) {
+         prefix[j + 1] = convolve(prefix[j], distributions.get(j), totalMines);
+      }
+      for (int j = numComponents - 1; j >= 0; j--) {
+         suffix[j] = convolve(distributions.get(j), suffix[j + 1], totalMines);
+      }
+      double[] weights = interiorWeights(numInterior, totalMines, Math.min(frontier.size(), totalMines));
+
+      for (int j = 0; j < numComponents; j++) {
+         double[] others = convolve(prefix[j], suffix[j + 1], totalMines);
+         Counts counts = results.get(j);
+         int size = counts.configurations.length;
+         double[] weightOf = new double[size]; // weight of this component having k mines, over all the others
+         double total = 0;
+         for (int k = 0; k < size; k++) {
+            for (int m = 0; m < others.length && k + m < weights.length; m++) {
+               weightOf[k] += others[m] * weights[k + m];
+            }
+            total += counts.configurations[k] * weightOf[k];
+         }
+         int[] variables = components.get(j).squares;
+         for (int v = 0; v < variables.length; v++) {
+            double mine = 0;
+            for (int k = 0; k < size; k++) {
+               mine += counts.mines[v][k] * weightOf[k];
+            }
+            probabilities[variables[v]] = mine / total;
+         }
+      }
+
+      if (numInterior > 0) {
+         double[] all = prefix[numComponents];
+         double total = 0;
+         double mines = 0;
+         for (int t = 0; t < all.length && t < weights.length; t++) {
+            total += all[t] * weights[t];
+            mines += all[t] * weights[t] * (totalMines - t) / numInterior;
+         }
+         double interior = mines / total;
+         for (int square = 0; square < numRows * numCols; square++) {
+            if (variableOf[square] < 0 && !field.isUncovered(square / numCols, square % numCols)) {
+               probabilities[square] = interior;
+            }
+         }
+      }
+      return probabilities;
+   }
+
+   // <put private methods here>
+   /**
+    * Returns a hash of the pattern a component's counts depend on: the window hash
+    * of the squares within one square of the component (which holds all its
+    * constraints, and everything they constrain), combined with where in the
+    * window the component's first square is, to tell apart components that
+    * share a window. The same pattern anywhere on any board gives the same hash.
+    *
+    * @param field     the field
+    * @param component the component
+    * @return the hash
+    */
+   private static long patternHash(VisibleField field, Component component) {
+      int numCols = field.getMineField().numCols();
+      int top = Integer.MAX_VALUE;
+      int bottom = Integer.MIN_VALUE;
+      int left = Integer.MAX_VALUE;
+      int right = Integer.MIN_VALUE;
+      for (int square : component.squares) {
+         top = Math.min(top, square / numCols);
+         bottom = Math.max(bottom, square / numCols);
+         left = Math.min(left, square % numCols);
+         right = Math.max(right, square % numCols);
+      }
+      int width = right - left + 3;
+      long window = field.windowHash(top - 1, left - 1, bottom - top + 3, width);
+      int first = component.squares[0];
+      int anchor = (first / numCols - top + 1) * width + (first % numCols - left + 1);
+      return window * 0x9e3779b97f4a7c15L + anchor;
+   }
+
+   /**
+    * Groups the frontier squares by union-find root into components, and attaches
+    * each constraint to its component. A component's squares are numbered in the
+    * (row-major) order of the constraints that first mention them, so squares that
+    * share constraints are close together in the search order and the search
+    * completes constraints early, which lets it prune sooner.
+    *
+    * @param field       the field
+    * @param frontier    frontier squares, by frontier number
+    * @param constraints uncovered squares with covered neighbors
+    * @param parent      union-find parents of the frontier numbers
+    * @param variableOf  square -> frontier number, or -1
+    * @return the components
+    */
+   private static List<Component> buildComponents(VisibleField field, IntBuffer frontier, IntBuffer constraints,
+         IntBuffer parent, int[] variableOf) {
+      int numCols = field.getMineField().numCols();
+      int numRows = field.getMineField().numRows();
+      int[] componentOf = new int[frontier.size()];
+      Arrays.fill(componentOf, -1);
+      List<IntBuffer> constraintsOf = new ArrayList<>();
+      for (int i = 0; i < constraints.size(); i++) {
+         int square = constraints.get(i);
+         int root = find(parent, firstCoveredNeighbor(field, square, variableOf));
+         if (componentOf[root] < 0) {
+            componentOf[root] = constraintsOf.size();
+            constraintsOf.add(new IntBuffer());
+         }
+         constraintsOf.get(componentOf[root]).add(square);
+      }
+
+      List<Component> components = new ArrayList<>();
+      int[] local = new int[frontier.size()]; // frontier number -> position within its component
+      Arrays.fill(local, -1);
+      for (IntBuffer squares : constraintsOf) {
+         IntBuffer order = new IntBuffer();
+         int[][] constraintVars = new int[squares.size()][];
+         int[] targets = new int[squares.size()];
+         for (int i = 0; i < squares.size(); i++) {
+            int square = squares.get(i);
+            int row = square / numCols;
+            int col = square % numCols;
+            targets[i] = field.getStatus(row, col);
+            IntBuffer vars = new IntBuffer();
+            for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, numRows - 1); r++) {
+               for (int c = Math.max(col - 1, 0); c <= Math.min(col + 1, numCols - 1); c++) {
+                  int variable = variableOf[r * numCols + c];
+                  if (variable < 0) {
+                     continue;
+                  }
+                  if (local[variable] < 0) {
+                     local[variable] = order.size();
+                     order.add(variable);
+                  }
+                  vars.add(local[variable]);
+               }
+            }
+            constraintVars[i] = Arrays.copyOf(vars.array(), vars.size());
+         }
+         int[] squaresOfComponent = new int[order.size()];
+         for (int v = 0; v < order.size(); v++) {
+            squaresOfComponent[v] = frontier.get(order.get(v));
+         }
+         components.add(new Component(squaresOfComponent, constraintVars, targets));
+      }
+      return components;
+   }
+
+   /**
+    * Returns the frontier number of the first covered neighbor of a constraint.
+    *
+    * @param field      the field
+    * @param square     row-major index of the constraint
+    * @param variableOf square -> frontier number, or -1
+    * @return frontier number of a covered neighbor
+    */
+   private static int firstCoveredNeighbor(VisibleField field, int square, int[] variableOf) {
+      int numRows = field.getMineField().numRows();
+      int numCols = field.getMineField().numCols();
+      int row = square / numCols;
+      int col = square % numCols;
+      for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, numRows - 1); r++) {
+         for (int c = Math.max(col - 1, 0); c <= Math.min(col + 1, numCols - 1); c++) {
+            if (variableOf[r * numCols + c] >= 0) {
+               return variableOf[r * numCols + c];
+            }
+         }
+      }
+      throw new AssertionError(square);
+   }
+
+   /**
+    * Returns the relative weights, for t = 0 .. maxFrontierMines mines on the
+    * frontier, of the number of ways to put the remaining totalMines - t mines on
+    * the interior squares, i.e. C(numInterior, totalMines - t), scaled so the
+    * largest is 1.
+    *
+    * @param numInterior       number of interior squares
+    * @param totalMines        number of mines in the field
+    * @param maxFrontierMines  most mines the frontier could have
+    * @return the weights
+    */
+   private static double[] interiorWeights(int numInterior, int totalMines, int maxFrontierMines) {
+      double[] logFactorial = new double[numInterior + 1];
+      for (int i = 1; i <= numInterior; i++) {
+         logFactorial[i] = logFactorial[i - 1] + Math.log(i);
+      }
+      double[] logWeights = new double[maxFrontierMines + 1];
+      double maxLog = Double.NEGATIVE_INFINITY;
+      for (int t = 0; t <= maxFrontierMines; t++) {
+         int rest = totalMines - t;
+         logWeights[t] = (rest < 0 || rest > numInterior) ? Double.NEGATIVE_INFINITY
+               : logFactorial[numInterior] - logFactorial[rest] - logFactorial[numInterior - rest];
+         maxLog = Math.max(maxLog, logWeights[t]);
+      }
+      double[] weights = new double[maxFrontierMines + 1];
+      for (int t = 0; t <= maxFrontierMines; t++) {
+         weights[t] = Math.exp(logWeights[t] - maxLog);
+      }
+      return weights;
+   }
+
+   /**
+    * Convolves two distributions over numbers of mines, dropping mine counts over
+    * the limit and rescaling the result so its largest entry is 1.
+    *
+    * @param a     first distribution
+    * @param b     second distribution
+    * @param limit most mines that are possible
+    * @return the combined distribution
+    */
+   private static double[] convolve(double[] a, double[] b, int limit) {
+      double[] result = new double[Math.min(a.length + b.length - 1, limit + 1)];
+      double max = 0;
+      for (int i = 0; i < a.length && i < result.length; i++) {
+         for (int j = 0; j < b.length && i + j < result.length; j++) {
+            result[i + j] += a[i] * b[j];
+         }
+      }
+      for (double value : result) {
+         max = Math.max(max, value);
+      }
+      if (max > 0) {
+         for (int i = 0; i < result.length; i++) {
+            result[i] /= max;
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Finds the union-find root of x, halving paths on the way.
+    *
+    * @param parent the parents
+    * @param x      the element
+    * @return its root
+    */
+   private static int find(IntBuffer parent, int x) {
+      int[] p = parent.array();
+      while (p[x] != x) {
+         p[x] = p[p[x]];
+         x = p[x];
+      }
+      return x;
+   }
+
+   /**
+    * Merges the sets holding x and y.
+    *
+    * @param parent the parents
+    * @param x      an element
+    * @param y      another element
+    */
+   private static void union(IntBuffer parent, int x, int y) {
+      int rootX = find(parent, x);
+      int rootY = find(parent, y);
+      if (rootX != rootY) {
+         parent.array()[rootY] = rootX;
+      }
+   }
+
+   /**
+    * One connected component of the frontier: its squares (in search order) and
+    * the constraints on them, as positions in that order.
+    */
+   private static class Component {
+      final int[] squares;
+      final int[][] constraintVars;
+      final int[] targets;
+      final int[][] constraintsOfVar;
+      long pattern; // see patternHash, only set when the engine has a cache
+
+      Component(int[] squares, int[][] constraintVars, int[] targets) {
+         this.squares = squares;
+         this.constraintVars = constraintVars;
+         this.targets = targets;
+         IntBuffer[] lists = new IntBuffer[squares.length];
+         for (int v = 0; v < squares.length; v++) {
+            lists[v] = new IntBuffer();
+         }
+         for (int c = 0; c < constraintVars.length; c++) {
+            for (int v : constraintVars[c]) {
+               lists[v].add(c);
+            }
+         }
+         constraintsOfVar = new int[squares.length][];
+         for (int v = 0; v < squares.length; v++) {
+            constraintsOfVar[v] = Arrays.copyOf(lists[v].array(), lists[v].size());
+         }
+      }
+   }
+
+   /**
+    * The result of a search: configurations[k] is the number of valid
+    * configurations with k mines, and mines[v][k] is how many of those have a mine
+    * on square v.
+    */
+   private static class Counts {
+      final double[] configurations;
+      final double[][] mines;
+
+      Counts(int numVariables) {
+         configurations = new double[numVariables + 1];
+         mines = new double[numVariables][numVariables + 1];
+      }
+
+      void add(Counts other) {
+         for (int k = 0; k < configurations.length; k++) {
+            configurations[k] += other.configurations[k];
+         }
+         for (int v = 0; v < mines.length; v++) {
+            for (int k = 0; k < configurations.length; k++) {
+               mines[v][k] += other.mines[v][k];
+            }
+         }
+      }
+   }
+
+   /**
+    * Counts the valid configurations of a component below a partial assignment of
+    * its first squares, by backtracking. A constraint prunes the search as soon
+    * as it has too many mines, or too few squares left to reach its number.
+    */
+   @SuppressWarnings("serial") // only ever run in a pool, never serialized
+   private static class SearchTask extends RecursiveTask<Counts> {
+
+      private final Component component;
+      private final byte[] assignment; // 1 for a mine, for squares before next
+      private final int[] placed; // mines assigned so far around each constraint
+      private final int[] unassigned; // squares not yet assigned around each constraint
+      private final int next;
+      private final int minesSoFar;
+      private Counts counts;
+
+      SearchTask(Component component) {
+         this.component = component;
+         this.assignment = new byte[component.squares.length];
+         this.placed = new int[component.targets.length];
+         this.unassigned = new int[component.targets.length];
+         for (int c = 0; c < unassigned.length; c++) {
+            unassigned[c] = component.constraintVars[c].length;
+         }
+         this.next = 0;
+         this.minesSoFar = 0;
+      }
+
+      private SearchTask(SearchTask parent, int value) {
+         this.component = parent.component;
+         this.assignment = parent.assignment.clone();
+         this.placed = parent.placed.clone();
+         this.unassigned = parent.unassigned.clone();
+         this.next = parent.next + 1;
+         this.minesSoFar = parent.minesSoFar + value;
+         apply(parent.next, value);
+      }
+
+      protected Counts compute() {
+         counts = new Counts(component.squares.length);
+         if (next < SPLIT_DEPTH && next < component.squares.length
+               && component.squares.length >= SPLIT_MIN_VARIABLES) {
+            List<SearchTask> children = new ArrayList<>();
+            for (int value = 0; value <= 1; value++) {
+               if (canAssign(next, value)) {
+                  children.add(new SearchTask(this, value));
+               }
+            }
+            for (SearchTask child : invokeAll(children)) {
+               counts.add(child.join());
+            }
+         }
+         else {
+            search(next, minesSoFar);
+         }
+         return counts;
+      }
+
+      private void search(int v, int mines) {
+         if (v == component.squares.length) {
+            counts.configurations[mines]++;
+            for (int i = 0; i < assignment.length; i++) {
+               if (assignment[i] == 1) {
+                  counts.mines[i][mines]++;
+               }
+            }
+            return;
+         }
+         for (int value = 0; value <= 1; value++) {
+            if (canAssign(v, value)) {
+               apply(v, value);
+               search(v + 1, mines + value);
+               undo(v, value);
+            }
+         }
+      }
+
+      private boolean canAssign(int v, int value) {
+         for (int c : component.constraintsOfVar[v]) {
+            int newPlaced = placed[c] + value;
+            if (newPlaced > component.targets[c] || newPlaced + unassigned[c] - 1 < component.targets[c]) {
+               return false;
+            }
+         }
+         return true;
+      }
+
+      private void apply(int v, int value) {
+         assignment[v] = (byte) value;
+         for (int c : component.constraintsOfVar[v]) {
+            placed[c] += value;
+            unassigned[c]--;
+         }
+      }
+
+      private void undo(int v, int value) {
+         assignment[v] = 0;
+         for (int c : component.constraintsOfVar[v]) {
+            placed[c] -= value;
+            unassigned[c]++;
+         }
+      }
+   }
+
+   /**
+    * Counts the valid configurations of a component by sweeping over its squares
+    * in search order, the way a long frontier is counted in time polynomial in
+    * its length. After the first v squares are assigned, all that matters for
+    * the rest is how many mines each open constraint (one with squares on both
+    * sides of v) has so far, so partial configurations with the same open counts
+    * are merged into one state, holding their number by mines so far. A forward
+    * pass finds the states at each step and their counts, and a backward pass
+    * the number of ways to finish each state; a mine on square v is then counted
+    * from the states before it and the ways to finish after it.
+    *
+    * Counts of long frontiers overflow doubles, so each step's counts are scaled
+    * by a power of two (which is exact), and the scales kept apart.
+    */
+   private static class Sweep {
+
+      private final Component component;
+      private final int numVariables;
+      private final int[][] from; // from[v][i]: position of open constraint i after v among those open before v, or -1
+      private final boolean[][] has; // has[v][i]: whether open constraint i after v contains square v
+      private final int[][] target; // target[v][i]: number of open constraint i after v
+      private final int[][] left; // left[v][i]: squares after v around open constraint i after v
+      private final int[][] closeFrom; // closeFrom[v][j]: position of constraint j that ends at v, as from
+      private final int[][] closeTarget; // closeTarget[v][j]: its number
+
+      Sweep(Component component) {
+         this.component = component;
+         numVariables = component.squares.length;
+         int numConstraints = component.targets.length;
+         int[] last = new int[numConstraints];
+         IntBuffer[] startsAt = new IntBuffer[numVariables];
+         for (int v = 0; v < numVariables; v++) {
+            startsAt[v] = new IntBuffer();
+         }
+         for (int c = 0; c < numConstraints; c++) {
+            int first = Integer.MAX_VALUE;
+            for (int v : component.constraintVars[c]) {
+               first = Math.min(first, v);
+               last[c] = Math.max(last[c], v);
+            }
+            startsAt[first].add(c);
+         }
+         int[] unassigned = new int[numConstraints];
+         for (int c = 0; c < numConstraints; c++) {
+            unassigned[c] = component.constraintVars[c].length;
+         }
+         from = new int[numVariables][];
+         has = new boolean[numVariables][];
+         target = new int[numVariables][];
+         left = new int[numVariables][];
+         closeFrom = new int[numVariables][];
+         closeTarget = new int[numVariables][];
+         boolean[] touched = new boolean[numConstraints];
+         IntBuffer open = new IntBuffer(); // open before v
+         for (int v = 0; v < numVariables; v++) {
+            for (int c : component.constraintsOfVar[v]) {
+               touched[c] = true;
+               unassigned[c]--;
+            }
+            IntBuffer next = new IntBuffer();
+            IntBuffer nextFrom = new IntBuffer();
+            IntBuffer closing = new IntBuffer();
+            IntBuffer closingFrom = new IntBuffer();
+            for (int i = 0; i < open.size() + startsAt[v].size(); i++) {
+               boolean wasOpen = i < open.size();
+               int c = wasOpen ? open.get(i) : startsAt[v].get(i - open.size());
+               if (last[c] == v) {
+                  closing.add(component.targets[c]);
+                  closingFrom.add(wasOpen ? i : -1);
+               }
+               else {
+                  next.add(c);
+                  nextFrom.add(wasOpen ? i : -1);
+               }
+            }
+            int size = next.size();
+            from[v] = Arrays.copyOf(nextFrom.array(), size);
+            has[v] = new boolean[size];
+            target[v] = new int[size];
+            left[v] = new int[size];
+            for (int i = 0; i < size; i++) {
+               int c = next.get(i);
+               has[v][i] = touched[c];
+               target[v][i] = component.targets[c];
+               left[v][i] = unassigned[c];
+            }
+            closeFrom[v] = Arrays.copyOf(closingFrom.array(), closingFrom.size());
+            closeTarget[v] = Arrays.copyOf(closing.array(), closing.size());
+            for (int c : component.constraintsOfVar[v]) {
+               touched[c] = false;
+            }
+            open = next;
+         }
+      }
+
+      /**
+       * Counts the configurations.
+       *
+       * @return the counts, scaled by a power of two
+       */
+      Counts count() {
+         List<Map<ByteBuffer, double[]>> forward = new ArrayList<>(); // states before each square
+         int[] forwardScale = new int[numVariables + 1];
+         Map<ByteBuffer, double[]> states = new HashMap<>();
+         states.put(ByteBuffer.wrap(new byte[0]), new double[] { 1 });
+         forward.add(states);
+         for (int v = 0; v < numVariables; v++) {
+            Map<ByteBuffer, double[]> nextStates = new HashMap<>();
+            int length = v + 2; // up to v + 1 mines
+            for (Map.Entry<ByteBuffer, double[]> entry : states.entrySet()) {
+               for (int value = 0; value <= 1; value++) {
+                  byte[] next = step(entry.getKey().array(), v, value);
+                  if (next != null) {
+                     double[] counts = nextStates.computeIfAbsent(ByteBuffer.wrap(next), key -> new double[length]);
+                     addShifted(counts, entry.getValue(), value, 1);
+                  }
+               }
+            }
+            forwardScale[v + 1] = forwardScale[v] + rescale(nextStates);
+            forward.add(nextStates);
+            states = nextStates;
+         }
+
+         Counts result = new Counts(numVariables);
+         int[] minesScale = new int[numVariables];
+         Map<ByteBuffer, double[]> finishes = forward.get(numVariables); // ways to finish each state after the square
+         int finishScale = 0;
+         for (double[] counts : finishes.values()) {
+            Arrays.fill(counts, 0);
+            counts[0] = 1;
+         }
+         for (int v = numVariables - 1; v >= 0; v--) {
+            Map<ByteBuffer, double[]> before = new HashMap<>();
+            for (Map.Entry<ByteBuffer, double[]> entry : forward.get(v).entrySet()) {
+               double[] ways = new double[numVariables - v + 1];
+               for (int value = 0; value <= 1; value++) {
+                  byte[] next = step(entry.getKey().array(), v, value);
+                  double[] after = (next == null) ? null : finishes.get(ByteBuffer.wrap(next));
+                  if (after == null) {
+                     continue;
+                  }
+                  addShifted(ways, after, value, 1);
+                  if (value == 1) {
+                     convolveInto(result.mines[v], entry.getValue(), after);
+                  }
+               }
+               before.put(entry.getKey(), ways);
+            }
+            minesScale[v] = forwardScale[v] + finishScale;
+            finishScale += rescale(before);
+            finishes = before;
+            forward.set(v + 1, null); // no longer needed
+         }
+         double[] all = finishes.values().iterator().next(); // the one state before any square
+         System.arraycopy(all, 0, result.configurations, 0, all.length);
+         for (int v = 0; v < numVariables; v++) {
+            for (int k = 0; k <= numVariables; k++) {
+               result.mines[v][k] = Math.scalb(result.mines[v][k], minesScale[v] - finishScale);
+            }
+         }
+         return result;
+      }
+
+      /**
+       * Returns the state after assigning square v, or null if that breaks a
+       * constraint (one it ends, or one that then can't reach its number).
+       *
+       * @param state mines so far around each open constraint before v
+       * @param v     the square
+       * @param value 1 for a mine
+       * @return the new state
+       */
+      private byte[] step(byte[] state, int v, int value) {
+         for (int j = 0; j < closeFrom[v].length; j++) { // every constraint ending at v contains it
+            int placed = ((closeFrom[v][j] < 0) ? 0 : state[closeFrom[v][j]]) + value;
+            if (placed != closeTarget[v][j]) {
+               return null;
+            }
+         }
+         byte[] next = new byte[from[v].length];
+         for (int i = 0; i < next.length; i++) {
+            int placed = ((from[v][i] < 0) ? 0 : state[from[v][i]]) + (has[v][i] ? value : 0);
+            if (placed > target[v][i] || placed + left[v][i] < target[v][i]) {
+               return null;
+            }
+            next[i] = (byte) placed;
+         }
+         return next;
+      }
+
+      /**
+       * Adds scale times counts, shifted up by some mines, to a sum.
+       *
+       * @param sum    where to add
+       * @param counts what to add
+       * @param shift  mines to shift by
+       * @param scale  factor
+       */
+      private static void addShifted(double[] sum, double[] counts, int shift, double scale) {
+         for (int k = 0; k < counts.length && k + shift < sum.length; k++) {
+            sum[k + shift] += counts[k] * scale;
+         }
+      }
+
+      /**
+       * Adds the configurations with a mine on a square, by total number of mines,
+       * made of a way to reach the square, the mine, and a way to finish after
+       * it.
+       *
+       * @param sum    where to add, by total number of mines
+       * @param before ways to reach the square, by mines before it
+       * @param after  ways to finish, by mines after it
+       */
+      private static void convolveInto(double[] sum, double[] before, double[] after) {
+         for (int i = 0; i < before.length; i++) {
+            if (before[i] == 0) {
+               continue;
+            }
+            for (int j = 0; j < after.length && i + j + 1 < sum.length; j++) {
+               sum[i + j + 1] += before[i] * after[j];
+            }
+         }
+      }
+
+      /**
+       * Scales a step's counts by a power of two, so the largest is from 1 to 2
+       * (unless they're all 0).
+       *
+       * @param states the step's states
+       * @return the exponent they were divided by
+       */
+      private static int rescale(Map<ByteBuffer, double[]> states) {
+         double max = 0;
+         for (double[] counts : states.values()) {
+            for (double count : counts) {
+               max = Math.max(max, count);
+            }
+         }
+         if (max == 0) {
+            return 0;
+         }
+         int exponent = Math.getExponent(max);
+         for (double[] counts : states.values()) {
+            for (int k = 0; k < counts.length; k++) {
+               counts[k] = Math.scalb(counts[k], -exponent);
+            }
+         }
+         return exponent;
+      }
+   }
+
+}
@@ -0,0 +1,297 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * ReplayReader class Plays back the games in a file written by ReplayWriter, by
+ * making the recorded moves on a VisibleField, as fast as it can (the recorded
+ * times are available, but not waited for). The file is memory-mapped, so
+ * reading it is just decoding bytes in memory, and the operating system does the
+ * I/O. A file may be at most 2GB. A record cut short at the end of the file
+ * (e.g. the game in progress when the writing program was killed) isn't played:
+ * nextGame stops before it, and hasTruncatedGame says so.
+ *
+ * Typical use:
+ *
+ * <pre>
+ * ReplayReader reader = new ReplayReader(file);
+ * while (reader.nextGame()) {
+ *    while (reader.nextMove()) {
+ *       ... look at reader.getField(), reader.getMove() etc.
+ *    }
+ * }
+ * </pre>
+ *
+ * To run it from the command line, which plays every game in the file and prints
+ * some totals: java ReplayReader file
+ */
+public class ReplayReader {
+
+   private final MappedByteBuffer data;
+
+   private VisibleField field; // reused while games have the same size
+   private int numCols;
+   private int move;
+   private int cell;
+   private long millis;
+   private boolean inGame;
+   private boolean truncated;
+
+   public static void main(String[] args) throws IOException {
+      ReplayReader reader = new ReplayReader(Paths.get(args[0]));
+      long games = 0;
+      long wins = 0;
+      long moves = 0;
+      long start = System.nanoTime();
+      while (reader.nextGame()) {
+         games++;
+         moves += reader.playGame();
+         VisibleField field = reader.getField();
+         if (field.isGameOver() && !hasExploded(field)) {
+            wins++;
+         }
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.printf("%d games, %d moves, %d won, played back in %.3f sec%n", games, moves, wins, seconds);
+      if (reader.hasTruncatedGame()) {
+         System.out.println("the last game was cut short, and was skipped");
+      }
+   }
+
+   /**
+    * Opens a replay file.
+    *
+    * @param file the file to read
+    * @throws IOException if the file can't be read or isn't a replay file
+    */
+   public ReplayReader(Path file) throws IOException {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+         data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      if (data.remaining() < 4 || data.getInt() != ReplayWriter.MAGIC) {
+         throw new IOException("not a replay file: " + file);
+      }
+   }
+
+   /**
+    * Moves on to the next game in the file (skipping any moves left in the
+    * current one), and sets up the field for it: the mines it was played with,
+    * and every square covered. A game whose record doesn't all fit in the file
+    * isn't started, and ends the file (see hasTruncatedGame).
+    *
+    * @return whether there was another game
+    */
+   public boolean nextGame() {
+      while (inGame) {
+         nextMove();
+      }
+      if (!data.hasRemaining()) {
+         return false;
+      }
+      if (!isWholeRecord(data.duplicate())) {
+         truncated = true;
+         data.position(data.limit());
+         return false;
+      }
+      int numRows = (int) getVarint(data);
+      numCols = (int) getVarint(data);
+      int numMines = (int) getVarint(data);
+      MineField mineField = (field == null) ? null : field.getMineField();
+      if (mineField == null || mineField.numRows() != numRows || mineField.numCols() != numCols
+            || mineField.numMines() != numMines) {
+         mineField = new MineField(numRows, numCols, numMines);
+         field = new VisibleField(mineField);
+         field.setUndoEnabled(true); // recorded games may undo and redo
+      }
+      int numBytes = (int) (((long) numRows * numCols + 7) >>> 3);
+      long[] packed = new long[(numBytes + 7) >>> 3];
+      for (int i = 0; i < numBytes; i++) { // little-endian bytes of the words
+         packed[i >>> 3] |= (data.get() & 0xffL) << ((i & 7) << 3);
+      }
+      mineField.unpackMines(packed);
+      field.resetGameDisplay();
+      inGame = true;
+      return true;
+   }
+
+   /**
+    * Makes the next move of the current game on the field.
+    *
+    * @return whether there was another move (false at the end of the game)
+    */
+   public boolean nextMove() {
+      if (!inGame) {
+         return false;
+      }
+      long code = getVarint(data);
+      move = (int) (code & ((1 << ReplayWriter.MOVE_BITS) - 1));
+      if (move == ReplayWriter.END_OF_GAME) {
+         inGame = false;
+         return false;
+      }
+      cell = (int) (code >>> ReplayWriter.MOVE_BITS);
+      millis = getVarint(data);
+      int row = cell / numCols;
+      int col = cell % numCols;
+      switch (move) {
+         case VisibleField.UNCOVER_MOVE:
+            field.uncover(row, col);
+            break;
+         case VisibleField.GUESS_MOVE:
+            field.cycleGuess(row, col);
+            break;
+         case VisibleField.CHORD_MOVE:
+            field.chord(row, col);
+            break;
+         case VisibleField.REVEAL_MOVE:
+            field.revealMines();
+            break;
+         case VisibleField.UNDO_MOVE:
+            field.undo();
+            break;
+         case VisibleField.REDO_MOVE:
+            field.redo();
+            break;
+      }
+      return true;
+   }
+
+   /**
+    * Makes all the remaining moves of the current game.
+    *
+    * @return number of moves made
+    */
+   public int playGame() {
+      int moves = 0;
+      while (nextMove()) {
+         moves++;
+      }
+      return moves;
+   }
+
+   /**
+    * Returns the field the games are played back on. It may be a new one after
+    * nextGame, if the size of the game changed.
+    *
+    * @return the field
+    */
+   public VisibleField getField() {
+      return field;
+   }
+
+   /**
+    * Returns the kind of the move last made by nextMove.
+    *
+    * @return one of the VisibleField move constants (UNCOVER_MOVE etc.)
+    */
+   public int getMove() {
+      return move;
+   }
+
+   /**
+    * Returns the square of the move last made by nextMove.
+    *
+    * @return row-major index of the square, or 0 for moves that aren't on a square
+    */
+   public int getCell() {
+      return cell;
+   }
+
+   /**
+    * Returns how long the player took over the move last made by nextMove.
+    *
+    * @return milliseconds since the move before it (or since the game started)
+    */
+   public long getMillis() {
+      return millis;
+   }
+
+   /**
+    * Returns whether the file ended partway through a game's record, which
+    * nextGame then skipped.
+    *
+    * @return whether the last record was cut short
+    */
+   public boolean hasTruncatedGame() {
+      return truncated;
+   }
+
+   // <put private methods here>
+   /**
+    * Returns whether a buffer holds a whole game record (see ReplayWriter), with
+    * a sensible header, from its position on. Moves the position.
+    *
+    * @param record the buffer, at the start of the record
+    * @return whether the record is all there
+    */
+   private static boolean isWholeRecord(ByteBuffer record) {
+      long numRows = getVarint(record);
+      long numCols = getVarint(record);
+      long numMines = getVarint(record);
+      if (numRows <= 0 || numCols <= 0 || numMines < 0 || numRows * numCols > Integer.MAX_VALUE) {
+         return false;
+      }
+      long numBytes = (numRows * numCols + 7) >>> 3;
+      if (record.remaining() < numBytes) {
+         return false;
+      }
+      record.position(record.position() + (int) numBytes);
+      while (true) {
+         long code = getVarint(record);
+         if (code < 0) {
+            return false;
+         }
+         if ((code & ((1 << ReplayWriter.MOVE_BITS) - 1)) == ReplayWriter.END_OF_GAME) {
+            return true;
+         }
+         if (getVarint(record) < 0) {
+            return false;
+         }
+      }
+   }
+
+   /**
+    * Reads an unsigned LEB128 varint (see ReplayWriter).
+    *
+    * @param buffer where to read it from
+    * @return the value, or -1 if the buffer ends partway through it (or it's
+    *         too long to be one ReplayWriter writes)
+    */
+   private static long getVarint(ByteBuffer buffer) {
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+         if (!buffer.hasRemaining() || shift > 56) {
+            return -1;
+         }
+         b = buffer.get();
+         value |= (b & 0x7fL) << shift;
+         shift += 7;
+      } while (b < 0);
+      return value;
+   }
+
+   /**
+    * Returns whether a mine was uncovered in the game on a field.
+    *
+    * @param field the field
+    * @return whether any square is an EXPLODED_MINE
+    */
+   private static boolean hasExploded(VisibleField field) {
+      MineField mineField = field.getMineField();
+      for (int r = 0; r < mineField.numRows(); r++) {
+         for (int c = 0; c < mineField.numCols(); c++) {
+            if (field.getStatus(r, c) == VisibleField.EXPLODED_MINE) {
+               return true;
+            }
+         }
+      }
+      return false;
+   }
+
+}
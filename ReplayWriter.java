@@ -0,0 +1,268 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * ReplayWriter class Records every game played on a VisibleField to a file, so
+ * games can be analyzed later (see ReplayReader). It listens to the field, and
+ * every move made (FieldListener.moveMade) is recorded along with the time since
+ * the move before it.
+ *
+ * The file is MAGIC followed by one record per game. A record is a header (the
+ * number of rows, columns and mines, then the mine locations as a bitset of
+ * (rows * cols + 7) / 8 bytes, see MineField.packMines) followed by the moves,
+ * and ends with END_OF_GAME. A move is the varint (cell << MOVE_BITS | move) and
+ * the varint number of milliseconds since the previous move (or since the game
+ * started). Varints are unsigned LEB128: 7 bits per byte, low bits first, and the
+ * top bit set on every byte but the last. So a move on a beginner board usually
+ * takes 2 bytes.
+ *
+ * The mines of a game are only known once they have been placed, which may be
+ * after the first move, so the moves of a game are kept in memory and the
+ * record is written when the game ends (when the field is reset, or the writer
+ * closed). Writing the file is done by a background thread: records are
+ * encoded into buffers, and each full buffer is handed to that thread, so the
+ * thread making the moves (e.g. the Swing event thread) never waits for the
+ * disk.
+ *
+ * Recording and closing are synchronized, so close may be called from another
+ * thread (e.g. a shutdown hook) while moves are still being made: the record
+ * of the game in progress is then written whole, and any later moves ignored.
+ */
+public class ReplayWriter implements FieldListener, AutoCloseable {
+
+   static final int MAGIC = 0x4d535250; // "MSRP"
+   static final int MOVE_BITS = 3; // bits of a move varint that hold the kind of move
+   static final int END_OF_GAME = (1 << MOVE_BITS) - 1; // a "move" that isn't one of VisibleField's
+
+   private static final int BUFFER_SIZE = 64 * 1024;
+   private static final ByteBuffer STOP = ByteBuffer.allocate(0); // tells the background thread to finish
+
+   private final FileChannel channel;
+   private final BlockingQueue<ByteBuffer> full = new LinkedBlockingQueue<>(); // waiting to be written
+   private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>(); // written, to reuse
+   private final Thread background;
+   private volatile IOException failure; // the first error the background thread got, if any
+
+   private VisibleField field;
+   private boolean closed;
+   private ByteBuffer out; // being filled, handed to the background thread when full
+   private ByteBuffer game = ByteBuffer.allocate(1024); // moves of the current game
+   private long lastMoveNanos;
+
+   /**
+    * Create a writer that records to the given file, replacing anything in it.
+    *
+    * @param file the file to write
+    * @throws IOException if the file can't be opened
+    */
+   public ReplayWriter(Path file) throws IOException {
+      channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+      out = newBuffer();
+      out.putInt(MAGIC);
+      background = new Thread(this::writeBuffers, "replay writer");
+      background.setDaemon(true);
+      background.start();
+   }
+
+   /**
+    * Starts recording the games played on a field, from its current game on. A
+    * writer records one field at a time.
+    *
+    * @param field the field to record
+    */
+   public void attach(VisibleField field) {
+      this.field = field;
+      field.addFieldListener(this);
+      lastMoveNanos = System.nanoTime();
+   }
+
+   /**
+    * Records a move in the current game.
+    */
+   public synchronized void moveMade(VisibleField changed, int move, int cell) {
+      if (closed) {
+         return;
+      }
+      long now = System.nanoTime();
+      ensureRoom(2 * 10);
+      putVarint(game, ((long) cell << MOVE_BITS) | move);
+      putVarint(game, (now - lastMoveNanos) / 1_000_000);
+      lastMoveNanos = now;
+   }
+
+   /**
+    * Nothing to do: moves are recorded, not their effects.
+    */
+   public void squaresChanged(VisibleField changed, int[] cells, int count) {
+   }
+
+   /**
+    * Writes out the game that just ended, and starts a new one.
+    */
+   public synchronized void fieldReset(VisibleField changed) {
+      if (closed) {
+         return;
+      }
+      endGame();
+      lastMoveNanos = System.nanoTime();
+   }
+
+   /**
+    * Writes out the current game, stops recording, and waits until everything
+    * has been written to the file. Only the first call does anything. The
+    * writer stays a listener of the field, ignoring it, since the field may be
+    * in use on another thread; remove it from there if the field lives on.
+    *
+    * @throws IOException if writing failed at any point
+    */
+   public synchronized void close() throws IOException {
+      if (closed) {
+         return;
+      }
+      closed = true;
+      if (field != null) {
+         endGame();
+      }
+      handOff();
+      full.add(STOP);
+      try {
+         background.join();
+      }
+      catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+      channel.close();
+      if (failure != null) {
+         throw failure;
+      }
+   }
+
+   /**
+    * Adds an unsigned LEB128 varint to a buffer.
+    *
+    * @param buffer where to put it, with at least 10 bytes of room
+    * @param value  the value, treated as unsigned
+    */
+   static void putVarint(ByteBuffer buffer, long value) {
+      while ((value & ~0x7fL) != 0) {
+         buffer.put((byte) (value | 0x80));
+         value >>>= 7;
+      }
+      buffer.put((byte) value);
+   }
+
+   // <put private methods here>
+   /**
+    * Encodes the current game's record, if it has any moves, into the output
+    * buffers, and empties the move buffer.
+    */
+   private void endGame() {
+      if (game.position() == 0) {
+         return;
+      }
+      MineField mineField = field.getMineField();
+      ByteBuffer header = ByteBuffer.allocate(3 * 10);
+      putVarint(header, mineField.numRows());
+      putVarint(header, mineField.numCols());
+      putVarint(header, mineField.numMines());
+      write(header.flip());
+      long[] packed = mineField.packMines();
+      ByteBuffer mines = ByteBuffer.allocate(packed.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+      mines.asLongBuffer().put(packed);
+      mines.limit((int) (((long) mineField.numRows() * mineField.numCols() + 7) >>> 3));
+      write(mines);
+      ensureRoom(1);
+      game.put((byte) END_OF_GAME);
+      write(game.flip());
+      game.clear();
+   }
+
+   /**
+    * Copies bytes into the output buffers, handing each one to the background
+    * thread as it fills up.
+    *
+    * @param bytes the bytes to copy (from position to limit)
+    */
+   private void write(ByteBuffer bytes) {
+      while (bytes.hasRemaining()) {
+         if (!out.hasRemaining()) {
+            handOff();
+         }
+         int n = Math.min(bytes.remaining(), out.remaining());
+         int limit = bytes.limit();
+         bytes.limit(bytes.position() + n);
+         out.put(bytes);
+         bytes.limit(limit);
+      }
+   }
+
+   /**
+    * Gives the output buffer to the background thread to write, and starts
+    * filling another one.
+    */
+   private void handOff() {
+      if (out.position() > 0) {
+         full.add(out.flip());
+         out = newBuffer();
+      }
+   }
+
+   /**
+    * Returns an empty output buffer, reusing a written one if there is one.
+    *
+    * @return the buffer
+    */
+   private ByteBuffer newBuffer() {
+      ByteBuffer buffer = free.poll();
+      return (buffer != null) ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+   }
+
+   /**
+    * Makes sure the move buffer has room for some more bytes.
+    *
+    * @param bytes number of bytes needed
+    */
+   private void ensureRoom(int bytes) {
+      if (game.remaining() < bytes) {
+         ByteBuffer bigger = ByteBuffer.allocate(Math.max(game.capacity() * 2, game.position() + bytes));
+         game = bigger.put(game.flip());
+      }
+   }
+
+   /**
+    * Body of the background thread: writes buffers to the file in the order they
+    * were handed off, until told to stop.
+    */
+   private void writeBuffers() {
+      while (true) {
+         ByteBuffer buffer;
+         try {
+            buffer = full.take();
+         }
+         catch (InterruptedException e) {
+            return;
+         }
+         if (buffer == STOP) {
+            return;
+         }
+         try {
+            while (buffer.hasRemaining() && failure == null) {
+               channel.write(buffer);
+            }
+         }
+         catch (IOException e) {
+            failure = e; // keep taking buffers so the event thread never backs up; reported by close
+         }
+         free.add(buffer.clear());
+      }
+   }
+
+}
@@ -0,0 +1,213 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+   SimulationRunner -- plays many games of minesweeper without a GUI, to evaluate move strategies.
+   Games are spread over all the cores.  Each thread has its own MineField, VisibleField and strategy, which it
+   reuses for all its games, its own random number stream split from the seed, and a fixed share of the games,
+   so a run with the same arguments and number of threads plays the same games.
+
+   To run it from the command line:
+      java SimulationRunner [rows cols mines games [strategy [threads [seed]]]]
+   strategy is "solver" (the default: open squares MineSolver proves safe, otherwise guess) or "random".
+   The defaults are a beginner game (9 x 9 with 10 mines), 1,000,000 games, all the cores and seed 1.
+ */
+public class SimulationRunner {
+
+   private final int numRows;
+   private final int numCols;
+   private final int numMines;
+   private final Supplier<MoveStrategy> strategies;
+
+   private final AtomicLong wins = new AtomicLong();
+   private final AtomicLong moves = new AtomicLong();
+
+
+   public static void main(String[] args) throws Exception {
+      int rows = (args.length > 0) ? Integer.parseInt(args[0]) : 9;
+      int cols = (args.length > 1) ? Integer.parseInt(args[1]) : 9;
+      int mines = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+      long games = (args.length > 3) ? Long.parseLong(args[3]) : 1_000_000L;
+      String strategy = (args.length > 4) ? args[4] : "solver";
+      int threads = (args.length > 5) ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+      long seed = (args.length > 6) ? Long.parseLong(args[6]) : 1L;
+
+      Supplier<MoveStrategy> strategies;
+      if (strategy.equals("random")) {
+         strategies = RandomStrategy::new;
+      }
+      else if (strategy.equals("solver")) {
+         strategies = SolverStrategy::new;
+      }
+      else {
+         throw new IllegalArgumentException("unknown strategy: " + strategy);
+      }
+
+      SimulationRunner runner = new SimulationRunner(rows, cols, mines, strategies);
+      long start = System.nanoTime();
+      runner.run(games, threads, seed);
+      double seconds = (System.nanoTime() - start) / 1e9;
+
+      System.out.printf("%d games of %d x %d with %d mines, strategy %s, %d threads%n", games, rows, cols, mines,
+                        strategy, threads);
+      System.out.printf("%.1f games/sec, win rate %.2f%%, %.2f moves/game%n", games / seconds,
+                        100.0 * runner.numWins() / games, (double) runner.numMoves() / games);
+   }
+
+
+   /**
+      Create a runner for games with the given dimensions and number of mines.
+    * @param numRows  number of rows, must be positive
+    * @param numCols  number of columns, must be positive
+    * @param numMines  number of mines, PRE: 0 <= numMines < numRows * numCols
+    * @param strategies  makes a new strategy for each thread
+    */
+   public SimulationRunner(int numRows, int numCols, int numMines, Supplier<MoveStrategy> strategies) {
+      this.numRows = numRows;
+      this.numCols = numCols;
+      this.numMines = numMines;
+      this.strategies = strategies;
+   }
+
+
+   /**
+      Play the given number of games on the given number of threads, and wait for them to finish.  Each thread
+      plays games / threads of them (the first games % threads one more), whatever order they run in.  Adds to
+      the totals returned by numWins() and numMoves().
+    * @param games  number of games to play
+    * @param threads  number of threads to play them on
+    * @param seed  seed the threads' random number streams are split from
+    */
+   public void run(long games, int threads, long seed) throws Exception {
+      SplittableRandom root = new SplittableRandom(seed);
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+      try {
+         List<Future<?>> workers = new ArrayList<>();
+         for (int i = 0; i < threads; i++) {
+            SplittableRandom random = root.split();
+            long share = games / threads + ((i < games % threads) ? 1 : 0);
+            workers.add(pool.submit(() -> playGames(share, random)));
+         }
+         for (Future<?> worker : workers) {
+            worker.get();
+         }
+      }
+      finally {
+         pool.shutdown();
+      }
+   }
+
+
+   /**
+      Returns the number of games won so far.
+    * @return number of wins
+    */
+   public long numWins() {
+      return wins.get();
+   }
+
+
+   /**
+      Returns the number of moves (squares uncovered) made so far.
+    * @return number of moves
+    */
+   public long numMoves() {
+      return moves.get();
+   }
+
+
+   /**
+      Play this thread's share of the games.
+    * @param games  number of games to play
+    * @param random  this thread's random numbers
+    */
+   private void playGames(long games, SplittableRandom random) {
+      MineField mineField = new MineField(numRows, numCols, numMines, random.nextLong());
+      VisibleField field = new VisibleField(mineField);
+      MoveStrategy strategy = strategies.get();
+      long myWins = 0;
+      long myMoves = 0;
+      for (long game = 0; game < games; game++) {
+         field.resetGameDisplay();
+         strategy.newGame(field);
+         int square = strategy.nextMove(field, random);
+         mineField.populateMineField(square / numCols, square % numCols);   // first click is never a mine
+         boolean isNotAMine = true;
+         while (true) {
+            isNotAMine = field.uncover(square / numCols, square % numCols);
+            myMoves++;
+            if (field.isGameOver()) {
+               break;
+            }
+            square = strategy.nextMove(field, random);
+         }
+         if (isNotAMine) {
+            myWins++;
+         }
+      }
+      wins.addAndGet(myWins);
+      moves.addAndGet(myMoves);
+   }
+
+
+   //-------------------------------------------------------------------------------------
+   // INNER CLASS RandomStrategy
+   // opens a random covered square every move
+   static class RandomStrategy implements MoveStrategy {
+
+      public void newGame(VisibleField field) {
+      }
+
+      public int nextMove(VisibleField field, SplittableRandom random) {
+         MineField mineField = field.getMineField();
+         int numCols = mineField.numCols();
+         int square;
+         do {
+            square = random.nextInt(mineField.numRows() * numCols);
+         } while (field.getStatus(square / numCols, square % numCols) != VisibleField.COVERED);
+         return square;
+      }
+   }
+   //------ END OF INNER CLASS RandomStrategy----------------------------------------------
+
+
+   //-------------------------------------------------------------------------------------
+   // INNER CLASS SolverStrategy
+   // opens a square MineSolver proves safe if there is one, otherwise a random covered square that isn't
+   // known to be a mine
+   static class SolverStrategy implements MoveStrategy {
+
+      private MineSolver solver;
+
+      public void newGame(VisibleField field) {
+         if (solver == null || solver.getField() != field) {
+            if (solver != null) {
+               solver.detach();
+            }
+            solver = new MineSolver(field);   // after that it resets itself along with the field
+         }
+      }
+
+      public int nextMove(VisibleField field, SplittableRandom random) {
+         int square = solver.nextSafeSquare();
+         if (square >= 0) {
+            return square;
+         }
+         MineField mineField = field.getMineField();
+         int numCols = mineField.numCols();
+         do {
+            square = random.nextInt(mineField.numRows() * numCols);
+         } while (field.getStatus(square / numCols, square % numCols) != VisibleField.COVERED
+                  || solver.isKnownMine(square / numCols, square % numCols));
+         return square;
+      }
+   }
+   //------ END OF INNER CLASS SolverStrategy----------------------------------------------
+
+}
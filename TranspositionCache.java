@@ -0,0 +1,104 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * TranspositionCache class A bounded cache of analysis results, keyed by a
+ * 64-bit Zobrist hash of the position (or local pattern) they were worked out
+ * for (see VisibleField.zobristHash and VisibleField.windowHash), so an
+ * analysis that meets the same position again can look the result up instead
+ * of recomputing it. When the cache is full, the least recently used result is
+ * dropped.
+ *
+ * A hash stands for its position: two positions that hash the same are taken to
+ * be the same. With 64-bit hashes that's wrong for about one pair in 2^64, so
+ * results should be sanity-checked (e.g. their size) where that's cheap.
+ *
+ * It's safe to use from several threads at once.
+ *
+ * @param <V> the type of result
+ */
+public class TranspositionCache<V> {
+
+   private final Map<Long, V> entries;
+   private long hits;
+   private long misses;
+
+   /**
+    * Create an empty cache.
+    *
+    * @param maxEntries most results to keep, must be positive
+    */
+   public TranspositionCache(int maxEntries) {
+      entries = new LinkedHashMap<Long, V>(16, 0.75f, true) { // access order, so the eldest is least recently used
+         protected boolean removeEldestEntry(Map.Entry<Long, V> eldest) {
+            return size() > maxEntries;
+         }
+      };
+   }
+
+   /**
+    * Returns the result stored for a hash, or null if there isn't one, and counts
+    * a hit or a miss.
+    *
+    * @param hash the hash of the position
+    * @return the result, or null
+    */
+   public synchronized V get(long hash) {
+      V value = entries.get(hash);
+      if (value == null) {
+         misses++;
+      }
+      else {
+         hits++;
+      }
+      return value;
+   }
+
+   /**
+    * Stores the result for a hash, replacing any result it had, and dropping the
+    * least recently used result if the cache is full.
+    *
+    * @param hash  the hash of the position
+    * @param value the result, not null
+    */
+   public synchronized void put(long hash, V value) {
+      entries.put(hash, value);
+   }
+
+   /**
+    * Removes every result, and resets the hit and miss counts.
+    */
+   public synchronized void clear() {
+      entries.clear();
+      hits = 0;
+      misses = 0;
+   }
+
+   /**
+    * Returns the number of results stored.
+    *
+    * @return number of results
+    */
+   public synchronized int size() {
+      return entries.size();
+   }
+
+   /**
+    * Returns the number of times get found a result.
+    *
+    * @return number of hits
+    */
+   public synchronized long numHits() {
+      return hits;
+   }
+
+   /**
+    * Returns the number of times get didn't find a result.
+    *
+    * @return number of misses
+    */
+   public synchronized long numMisses() {
+      return misses;
+   }
+
+}
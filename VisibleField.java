@@ -1,5 +1,15 @@
 // Name: Kant Tantasathien
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * VisibleField class This is the data that's being displayed at any one point
  * in the game (i.e., visible field, because it's what the user can see about
@@ -7,8 +17,14 @@
  * actually has data about the whole current state of the game, including the
  * underlying mine field (getMineField()). Other accessors related to game
  * status: numMinesLeft(), isGameOver(). It also has mutators related to actions
- * the player could do (resetGameDisplay(), cycleGuess(), uncover()), and
- * changes the game state accordingly.
+ * the player could do (resetGameDisplay(), cycleGuess(), uncover(), chord()), and
+ * changes the game state accordingly. revealMines() shows where the mines were
+ * once a game has been lost. Every mutator reports the move made and the
+ * squares it changed to the registered FieldListeners, so views don't have to
+ * rescan the board and recorders (ReplayWriter) see every move.
+ * Once turned on with setUndoEnabled (it is off by default, since the history
+ * grows with every square changed), every action can be undone (undo()) and
+ * redone (redo()).
  * 
  * It, along with the MineField (accessible in mineField instance variable),
  * forms the Model for the game application, whereas GameBoardPanel is the View
@@ -39,10 +55,64 @@ public class VisibleField {
    public static final int EXPLODED_MINE = 11; // the one you uncovered by mistake (that caused you to lose)
    // ----------------------------------------------------------
 
+   // The following are the kinds of move reported to FieldListener.moveMade (one per mutator):
+   public static final int UNCOVER_MOVE = 0;
+   public static final int GUESS_MOVE = 1; // cycleGuess
+   public static final int CHORD_MOVE = 2;
+   public static final int REVEAL_MOVE = 3; // revealMines
+   public static final int UNDO_MOVE = 4;
+   public static final int REDO_MOVE = 5;
+
+   private static final int INITIAL_STACK_SIZE = 64;
+
+   // a flood fill that has opened this many squares goes on in parallel (see setFloodPool)
+   public static final int PARALLEL_FLOOD_THRESHOLD = 1 << 16;
+   // floods on fields with at least this many squares, and at most one mine in BULK_OPEN_SPARSENESS squares,
+   // open whole openings in bulk (see floodFill); elsewhere the openings are too few or too small for labeling
+   // them to pay off
+   public static final int BULK_OPEN_THRESHOLD = 1 << 16;
+   public static final int BULK_OPEN_SPARSENESS = 20;
+   private static final int FLOOD_CHUNK = 256; // frontier squares handed to each parallel task
+   private static final int FLOOD_TASK_BUDGET = 1 << 12; // squares a task expands before leaving the rest
+
+   private static final VarHandle STATUS = MethodHandles.arrayElementVarHandle(byte[].class);
+
+   // for working on the statuses of 8 squares at once, a byte each, in a long (see packStatuses)
+   private static final VarHandle EIGHT_STATUSES = MethodHandles.byteArrayViewVarHandle(long[].class,
+         ByteOrder.LITTLE_ENDIAN);
+   private static final long HIGH_BITS = 0x8080808080808080L;
+   private static final long THREES = 0x0303030303030303L; // -QUESTION in every byte
+
    // <put instance variables here>
    private MineField mineField;
-   private int[][] mineData;
+   private int numCols; // cached from mineField for the index helpers
+   private byte[] mineData; // row-major status of every square; every status fits in a byte
    private int minesFound;
+   private int coveredSafeSquares; // non-mine squares still covered; the game is won when this reaches 0
+   private int numExploded; // number of mines uncovered; the game is lost when this isn't 0
+   private int lastUncovered; // number of squares opened by the last uncover call
+   private int[] floodStack = new int[INITIAL_STACK_SIZE]; // work stack of row-major square indices, reused by
+                                                           // every flood fill
+   private List<FieldListener> listeners = new ArrayList<>();
+   private IntBuffer changedSquares = new IntBuffer(); // squares changed by the current mutator, only
+                                                       // recorded while there are listeners
+
+   // Undo history: each action is a run of (row-major index, old status) pairs in undoLog, and undoMarks holds
+   // the position in undoLog where each action starts. redoLog and redoMarks hold undone actions the same way.
+   // So the history takes memory in proportion to the number of squares changed, and undoing or redoing an
+   // action takes time in proportion to the number of squares it changed.
+   private boolean undoEnabled; // off unless asked for, so fields nobody undoes on don't keep a history
+   private IntBuffer undoLog = new IntBuffer();
+   private IntBuffer undoMarks = new IntBuffer();
+   private IntBuffer redoLog = new IntBuffer();
+   private IntBuffer redoMarks = new IntBuffer();
+   private IntBuffer history; // where setStatus records old statuses, null when not recording
+
+   private ForkJoinPool floodPool = ForkJoinPool.commonPool(); // null to always flood on one thread
+   private boolean bulkOpenEnabled = true; // false to never label the minefield's openings
+
+   private long hash; // Zobrist hash of the statuses, see zobristHash()
+   private boolean hashValid = true; // false after a bulk change, until zobristHash() recomputes it
 
    /**
     * Create a visible field that has the given underlying mineField. The initial
@@ -54,28 +124,51 @@ public class VisibleField {
    public VisibleField(MineField mineField) {
       this.mineField = mineField;
       minesFound = 0;
-      mineData = new int[mineField.numRows()][];
-      for (int r = 0; r < mineField.numRows(); r++) {
-         this.mineData[r] = new int[mineField.numCols()];
-         for (int c = 0; c < mineField.numCols(); c++) {
-            this.mineData[r][c] = COVERED;
-         }
-      }
+      coveredSafeSquares = numSafeSquares();
+      numExploded = 0;
+      numCols = mineField.numCols();
+      mineData = new byte[mineField.numRows() * numCols];
+      Arrays.fill(mineData, (byte) COVERED);
    }
 
    /**
     * Reset the object to its initial state (see constructor comments), using the
-    * same underlying MineField. Use nested loop to set the 2D array to COVERED.
+    * same underlying MineField. Fills the whole status array with COVERED, and
+    * forgets the undo history.
     */
    public void resetGameDisplay() {
       minesFound = 0;
-      for (int r = 0; r < mineField.numRows(); r++) {
-         for (int c = 0; c < mineField.numCols(); c++) {
-            this.mineData[r][c] = COVERED;
-         }
+      coveredSafeSquares = numSafeSquares();
+      numExploded = 0;
+      Arrays.fill(mineData, (byte) COVERED);
+      hash = 0; // every square COVERED, and their keys are 0
+      hashValid = true;
+      changedSquares.clear();
+      clearHistory();
+      for (FieldListener listener : listeners) {
+         listener.fieldReset(this);
       }
    }
 
+   /**
+    * Adds a listener that will be told about every change to the squares of this
+    * field from now on.
+    * 
+    * @param listener the listener to add
+    */
+   public void addFieldListener(FieldListener listener) {
+      listeners.add(listener);
+   }
+
+   /**
+    * Removes a listener previously added with addFieldListener.
+    * 
+    * @param listener the listener to remove
+    */
+   public void removeFieldListener(FieldListener listener) {
+      listeners.remove(listener);
+   }
+
    /**
     * Returns a reference to the mineField that this VisibleField "covers"
     * 
@@ -96,7 +189,7 @@ public class VisibleField {
     *         col)
     */
    public int getStatus(int row, int col) {
-      return mineData[row][col];
+      return mineData[index(row, col)];
    }
 
    /**
@@ -125,32 +218,35 @@ public class VisibleField {
     * 
     */
    public void cycleGuess(int row, int col) {
-      switch (mineData[row][col]) {
+      int cell = index(row, col);
+      fireMoveMade(GUESS_MOVE, cell);
+      beginAction();
+      switch (mineData[cell]) {
          case COVERED: // If the block is COVERED, the blocks become GUESS when right clicked
-            minesFound++;
-            mineData[row][col] = MINE_GUESS;
+            setStatus(cell, MINE_GUESS);
             break;
          case MINE_GUESS: // If the block is a GUESS, the blocks become QUESTION when right clicked
-            minesFound--;
-            mineData[row][col] = QUESTION;
+            setStatus(cell, QUESTION);
             break;
          case QUESTION: // If the block is a QUESTION, the blocks become COVERED when right clicked
-            mineData[row][col] = COVERED;
+            setStatus(cell, COVERED);
             break;
       }
+      endAction();
 
    }
 
    /**
     * Uncovers this square and returns false iff you uncover a mine here. If the
-    * square wasn't a mine or adjacent to a mine it also recursively uncovers all
-    * the squares in the neighboring area that are also not next to any mines,
-    * possibly uncovering a large region. Any mine-adjacent squares you reach will
-    * also be uncovered, and form (possibly along with parts of the edge of the
-    * whole field) the boundary of this region. Does not uncover, or keep searching
+    * square wasn't a mine or adjacent to a mine it also uncovers all the squares
+    * in the neighboring area that are also not next to any mines, possibly
+    * uncovering a large region. Any mine-adjacent squares you reach will also be
+    * uncovered, and form (possibly along with parts of the edge of the whole
+    * field) the boundary of this region. Does not uncover, or keep searching
     * through, squares that have the status MINE_GUESS. Note: this action may cause
     * the game to end: either in a win (opened all the non-mine squares) or a loss
-    * (opened a mine).
+    * (opened a mine). The region is opened with an explicit work stack rather than
+    * recursion, so even very large empty regions can't overflow the thread stack.
     * 
     * @param row of the square
     * @param col of the square
@@ -158,68 +254,261 @@ public class VisibleField {
     *         getMineField().inRange(row, col)
     */
    public boolean uncover(int row, int col) {
-      if (isUncovered(row, col) || mineData[row][col] == MINE_GUESS) { // make sure that we do not uncover something
-                                                                       // that is already uncovered
+      fireMoveMade(UNCOVER_MOVE, index(row, col));
+      lastUncovered = 0;
+      if (isUncovered(row, col) || mineData[index(row, col)] == MINE_GUESS) { // make sure that we do not uncover
+                                                                              // something that is already uncovered
          return true;
       }
+      beginAction();
       if (mineField.hasMine(row, col)) {
-         mineData[row][col] = EXPLODED_MINE;
+         setStatus(index(row, col), EXPLODED_MINE);
+         lastUncovered = 1;
+         endAction();
          return false;
       }
-      mineData[row][col] = mineField.numAdjacentMines(row, col); // set covered status to the number of adjacent mines.
-      if (mineData[row][col] < 1) { // If the number of Adjacment mines is 0 then call the uncover fuction on each
-                                    // adjacent cells.
-         if (row > 0) { // handling the top 3 cells
-            if (col > 0) { // topleft
-               uncover(row - 1, col - 1);   //Run the entire uncover function for the top left cell if the program is not in the top left cell
-            }
-            uncover(row - 1, col); // top middle
-            if (col < mineField.numCols() - 1) {
-               uncover(row - 1, col + 1); //Run the entire uncover function for the top right cell if the program is not in the top right cell
+      lastUncovered = floodFill(row, col);
+      endAction();
+      return true;
+   }
+
+   /**
+    * "Chords" on a numbered square: if the square is uncovered and exactly as
+    * many of its neighbors are MINE_GUESS as the number of mines adjacent to it,
+    * uncovers all its other covered neighbors (and the regions around any of them
+    * with no adjacent mines), as if uncover had been called on each. Otherwise
+    * does nothing. All the squares opened are reported to the listeners as one
+    * change, so a chord costs one update of the views, not one per neighbor. If
+    * the guesses were wrong, one or more of the neighbors is a mine, and the game
+    * is lost.
+    * 
+    * @param row row of the numbered square
+    * @param col col of the numbered square
+    * @return false iff a mine was uncovered PRE: getMineField().inRange(row, col)
+    */
+   public boolean chord(int row, int col) {
+      fireMoveMade(CHORD_MOVE, index(row, col));
+      lastUncovered = 0;
+      int status = mineData[index(row, col)];
+      if (status < 1 || status > 8 || countAround(row, col, MINE_GUESS) != status) {
+         return true;
+      }
+      boolean isNotAMine = true;
+      int numRows = mineField.numRows();
+      beginAction();
+      for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, numRows - 1); r++) {
+         for (int c = Math.max(col - 1, 0); c <= Math.min(col + 1, numCols - 1); c++) {
+            int neighbor = mineData[index(r, c)];
+            if (neighbor != COVERED && neighbor != QUESTION) { // open already (maybe by an earlier flood) or guessed
+               continue;
             }
-         }
-         if (row < mineField.numRows() - 1) { //Run the entire uncover function for the bottom left cell if the program is not in the top left cell
-            if (col > 0) {
-               uncover(row + 1, col - 1); // bottom left
+            if (mineField.hasMine(r, c)) {
+               setStatus(index(r, c), EXPLODED_MINE);
+               isNotAMine = false;
+               lastUncovered++;
             }
-            uncover(row + 1, col); // bottom middle
-            if (col < mineField.numCols() - 1) {
-               uncover(row + 1, col + 1); // bottom right
+            else {
+               lastUncovered += floodFill(r, c);
             }
          }
-         if (col > 0) {
-            uncover(row, col - 1); // left
-         }
-         if (col < mineField.numCols() - 1) {
-            uncover(row, col + 1); // right
-         }
       }
-      return true;
-      // check to see if it's less than 0
-      // check to see if mineField has a class. If it's true, set to mine
+      endAction();
+      return isNotAMine;
    }
 
    /**
-    * Returns whether the game is over. (Note: This is not a mutator.)
+    * Returns the number of squares that were opened by the most recent call to
+    * uncover or chord. This is 0 if that call had no effect, 1 if it opened a
+    * single numbered square or a mine, and the size of everything it opened
+    * otherwise.
+    * 
+    * @return number of squares opened by the last uncover or chord
+    */
+   public int numLastUncovered() {
+      return lastUncovered;
+   }
+
+   /**
+    * Returns whether the game is over. (Note: This is not a mutator.) The game is
+    * lost once a mine has been uncovered, and won once every non-mine square has
+    * been uncovered. Both are tracked as the game is played, so this takes
+    * constant time. Use revealMines() to show the mines after a loss.
     * 
     * @return whether game over
     */
    public boolean isGameOver() {
-      int gameOver = 0;
-      for (int r = 0; r < mineField.numRows(); r++) {
-         for (int c = 0; c < mineField.numCols(); c++) {
-            if (mineData[r][c] == EXPLODED_MINE) { // if you hit a mine
-               // perform gameover action
-               doGameOver();
-               return true;
-            }
-            if (!isUncovered(r, c)) { // Still in play
-               gameOver++;
-            }
+      return numExploded > 0 || coveredSafeSquares == 0; // Everything need to be uncovered except ones we know to be mines
+   }
+
+   /**
+    * Shows the end of a losing game: every mine that wasn't guessed becomes MINE,
+    * every correct guess becomes MINE, and every MINE_GUESS on a square without a
+    * mine becomes INCORRECT_GUESS. Does not change numMinesLeft(). Looks at every
+    * square, so it should be called once, when the game is lost.
+    */
+   public void revealMines() {
+      fireMoveMade(REVEAL_MOVE, 0);
+      beginAction();
+      for (int cell = 0; cell < mineData.length; cell++) { // one linear scan over the row-major statuses
+         switch (mineData[cell]) {
+            case COVERED:
+            case QUESTION:
+               if (mineField.hasMine(cell / numCols, cell % numCols)) {
+                  setStatus(cell, MINE);
+               }
+               break;
+            case MINE_GUESS:
+               setStatus(cell, mineField.hasMine(cell / numCols, cell % numCols) ? MINE : INCORRECT_GUESS);
+               break;
          }
       }
+      endAction();
+   }
 
-      return gameOver == mineField.numMines(); // Everything need to be uncovered except ones we know to be mines
+   /**
+    * Undoes the most recent action (cycleGuess, uncover, chord or revealMines)
+    * that hasn't been undone, putting every square it changed back the way it
+    * was, and with them numMinesLeft() and isGameOver(). Actions that had no
+    * effect aren't remembered, so they are skipped. The squares that change are
+    * reported to the listeners as one change.
+    * 
+    * @return whether there was an action to undo
+    */
+   public boolean undo() {
+      fireMoveMade(UNDO_MOVE, 0);
+      return rewind(undoLog, undoMarks, redoLog, redoMarks);
+   }
+
+   /**
+    * Redoes the most recently undone action. Undone actions can be redone until
+    * a new action is made, which forgets them.
+    * 
+    * @return whether there was an action to redo
+    */
+   public boolean redo() {
+      fireMoveMade(REDO_MOVE, 0);
+      return rewind(redoLog, redoMarks, undoLog, undoMarks);
+   }
+
+   /**
+    * Returns whether undo() would do anything.
+    * 
+    * @return whether there is an action to undo
+    */
+   public boolean canUndo() {
+      return undoMarks.size() > 0;
+   }
+
+   /**
+    * Returns whether redo() would do anything.
+    * 
+    * @return whether there is an undone action to redo
+    */
+   public boolean canRedo() {
+      return redoMarks.size() > 0;
+   }
+
+   /**
+    * Turns remembering actions for undo on or off (it is off to start with).
+    * The history takes 8 bytes per square changed, and is kept until the game
+    * is reset, so it should only be on where someone is going to undo, e.g. when
+    * replaying games that did. Turning it off forgets the history.
+    * 
+    * @param enabled whether actions can be undone
+    */
+   public void setUndoEnabled(boolean enabled) {
+      undoEnabled = enabled;
+      clearHistory();
+   }
+
+   /**
+    * Turns opening whole openings in bulk on large sparse fields on or off (it
+    * is on to start with, see BULK_OPEN_THRESHOLD). Opening in bulk makes the
+    * MineField label its openings, which takes about 8 more bytes per square
+    * (see MineField), so it can be turned off where memory is budgeted; floods
+    * then open the same squares, just without the lists.
+    * 
+    * @param enabled whether floods may open openings in bulk
+    */
+   public void setBulkOpenEnabled(boolean enabled) {
+      bulkOpenEnabled = enabled;
+   }
+
+   /**
+    * Sets the pool that large flood fills go on in parallel on (the common pool
+    * to start with). A flood that turns out to be large (PARALLEL_FLOOD_THRESHOLD
+    * squares opened) hands the rest of its region to the pool, whose tasks claim
+    * squares with a compare-and-set, so each is opened once; the counters, hash,
+    * undo history and listeners are then brought up to date on the calling
+    * thread. The squares opened, their statuses, the counters and the hash come
+    * out exactly as with a sequential fill, and undo restores the same state, but
+    * the order the squares are recorded in (for undo and for listeners) depends
+    * on which task got to each square first, so it varies from run to run. Pools
+    * with a parallelism of 1 (and null) mean every flood is sequential.
+    * 
+    * @param pool the pool to use, or null
+    */
+   public void setFloodPool(ForkJoinPool pool) {
+      floodPool = pool;
+   }
+
+   /**
+    * Returns a 64-bit Zobrist hash of the statuses of all the squares: the xor of
+    * zobristKey(index, status) over every square. Two fields with the same
+    * dimensions and statuses have the same hash, and different ones almost
+    * certainly don't, so it can be used as a key for positions that have been
+    * analyzed already (see TranspositionCache). It is kept up to date in constant
+    * time per changed square as moves are made, so this takes constant time.
+    * 
+    * @return the hash
+    */
+   public long zobristHash() {
+      if (!hashValid) {
+         hash = windowHash(0, 0, mineField.numRows(), numCols) ^ windowKey(mineField.numRows(), numCols);
+         hashValid = true;
+      }
+      return hash;
+   }
+
+   /**
+    * Returns a Zobrist hash of the statuses of a rectangle of squares, that
+    * doesn't depend on where the rectangle is: squares are keyed by their
+    * row-major index within the rectangle, and the size of the rectangle is
+    * hashed in. So the same local pattern (e.g. around a frontier) has the same
+    * hash wherever it is, and in any game. Squares of the rectangle that are off
+    * the field count as COVERED. Takes time in proportion to the area.
+    * 
+    * @param row    top row of the rectangle
+    * @param col    left column of the rectangle
+    * @param height number of rows in the rectangle
+    * @param width  number of columns in the rectangle
+    * @return the hash
+    */
+   public long windowHash(int row, int col, int height, int width) {
+      long result = windowKey(height, width);
+      for (int r = Math.max(row, 0); r < Math.min(row + height, mineField.numRows()); r++) {
+         for (int c = Math.max(col, 0); c < Math.min(col + width, numCols); c++) {
+            result ^= zobristKey((r - row) * width + (c - col), mineData[index(r, c)]);
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Returns the Zobrist key of a square having a status. The keys are worked out
+    * (by a SplitMix64 mix of the index and status) rather than looked up, so huge
+    * boards don't need a huge table. The key of COVERED is 0, so a new game
+    * hashes to 0 and covered squares cost nothing.
+    * 
+    * @param index  row-major index of the square (within the field or window)
+    * @param status its status
+    * @return the key
+    */
+   public static long zobristKey(int index, int status) {
+      if (status == COVERED) {
+         return 0;
+      }
+      return mix(((long) index << 4) | (status - QUESTION));
    }
 
    /**
@@ -231,31 +520,554 @@ public class VisibleField {
     * @return whether the square is uncovered PRE: getMineField().inRange(row, col)
     */
    public boolean isUncovered(int row, int col) {
-      return mineData[row][col] > COVERED;
+      return mineData[index(row, col)] > COVERED;
+   }
+
+   /**
+    * Writes the status of every square to a buffer, packed two to a byte as
+    * 4-bit nibbles (status - QUESTION, so 0 to 14), the square with the even
+    * row-major index in the low nibble. Used to save the game (GameSnapshot).
+    * Works on 8 squares at a time, reading their statuses as one long.
+    * 
+    * @param out where to write the (numRows * numCols + 1) / 2 bytes, in
+    *            little-endian order
+    */
+   void packStatuses(ByteBuffer out) {
+      int n = mineData.length;
+      int i = 0;
+      for (; i + 16 <= n; i += 16) { // 16 squares make a long
+         long low = packNibbles(toNibbles((long) EIGHT_STATUSES.get(mineData, i)));
+         long high = packNibbles(toNibbles((long) EIGHT_STATUSES.get(mineData, i + 8)));
+         out.putLong(low | (high << 32));
+      }
+      for (; i < n; i += 2) {
+         int high = (i + 1 < n) ? mineData[i + 1] - QUESTION : 0;
+         out.put((byte) ((high << 4) | (mineData[i] - QUESTION)));
+      }
+   }
+
+   /**
+    * Replaces the status of every square with statuses read from a buffer, as
+    * written by packStatuses, and forgets the undo history. The counters behind
+    * isGameOver() are worked out from the statuses; the number of guesses (which
+    * revealMines() doesn't change, so can't be worked out after a loss) is given.
+    * Listeners are told the whole field changed.
+    * 
+    * @param in         where to read the statuses from, in little-endian order
+    * @param minesFound number of mines guessed, as numMines() - numMinesLeft()
+    *                   when the statuses were written
+    */
+   void unpackStatuses(ByteBuffer in, int minesFound) {
+      int n = mineData.length;
+      int numbers = 0; // squares showing 0 to 8; safe squares only stop counting as covered when they do
+      int exploded = 0;
+      int i = 0;
+      for (; i + 16 <= n; i += 16) {
+         long word = in.getLong();
+         for (int half = 0; half < 2; half++) {
+            long nibbles = unpackNibbles(word >>> (half << 5)); // a byte for each of 8 squares
+            numbers += Long.bitCount(atLeast(nibbles, 0 - QUESTION) & ~atLeast(nibbles, 9 - QUESTION));
+            exploded += Long.bitCount(atLeast(nibbles, EXPLODED_MINE - QUESTION));
+            EIGHT_STATUSES.set(mineData, i + (half << 3), ((nibbles ^ HIGH_BITS) - THREES) ^ HIGH_BITS);
+         }
+      }
+      for (; i < n; i++) { // the last few, a byte at a time
+         int pair = ((i & 1) == 0) ? in.get() : in.get(in.position() - 1);
+         int status = ((pair >> ((i & 1) << 2)) & 0xf) + QUESTION;
+         mineData[i] = (byte) status;
+         numbers += (status >= 0 && status <= 8) ? 1 : 0;
+         exploded += (status == EXPLODED_MINE) ? 1 : 0;
+      }
+      this.minesFound = minesFound;
+      coveredSafeSquares = numSafeSquares() - numbers;
+      numExploded = exploded;
+      hashValid = false;
+      lastUncovered = 0;
+      changedSquares.clear();
+      clearHistory();
+      for (FieldListener listener : listeners) {
+         listener.fieldReset(this);
+      }
+   }
+
+   /**
+    * Returns the number of squares without mines that are still covered.
+    * 
+    * @return number of covered safe squares
+    */
+   int numCoveredSafeSquares() {
+      return coveredSafeSquares;
+   }
+
+   /**
+    * Returns the number of squares that are EXPLODED_MINE.
+    * 
+    * @return number of mines uncovered
+    */
+   int numExplodedMines() {
+      return numExploded;
    }
 
    // <put private methods here>
    /**
-    * This loops over minefield and shows where the mine exists. If a block is
-    * guessed incorrectly, it shows the guessed icon. Used the switch statement for
-    * the method. The method does not return any value and has no parameter.
-    */
-   private void doGameOver() {
-      for (int r = 0; r < mineField.numRows(); r++) {
-         for (int c = 0; c < mineField.numCols(); c++) {
-            switch (mineData[r][c]) {
-               case COVERED:
-               case QUESTION:
-                  if (mineField.hasMine(r, c)) {
-                     mineData[r][c] = MINE;
+    * Opens the non-mine square at (row, col) and, if it has no adjacent mines,
+    * the whole region around it. Squares are opened as soon as they are pushed on
+    * the work stack, so each one is pushed at most once and the stack never holds
+    * more than numRows * numCols entries. MINE_GUESS squares stop the fill, and
+    * QUESTION squares are opened like COVERED ones. On large sparse fields (see
+    * BULK_OPEN_THRESHOLD), unless turned off by setBulkOpenEnabled, a region that is one of the minefield's
+    * openings, none of it opened or guessed yet, is opened straight from the
+    * opening's list of squares instead (see openOpening).
+    * 
+    * @param row row of the square to start from
+    * @param col col of the square to start from
+    * @return the number of squares that were opened PRE: (row, col) is covered,
+    *         not a MINE_GUESS and has no mine
+    */
+   private int floodFill(int row, int col) {
+      int numRows = mineField.numRows();
+      int opened = 1;
+      int size = 0;
+      int start = index(row, col);
+      boolean bulk = bulkOpenEnabled && mineData.length >= BULK_OPEN_THRESHOLD
+            && (long) mineField.numMines() * BULK_OPEN_SPARSENESS <= mineData.length;
+      int opening = bulk ? mineField.openingOf(start) : -1;
+      if (opening >= 0 && openOpening(opening)) {
+         return mineField.openingSize(opening);
+      }
+      setStatus(start, mineField.numAdjacentMines(row, col));
+      if (mineData[start] == 0) {
+         floodStack[size++] = start;
+      }
+      while (size > 0) {
+         if (opened >= PARALLEL_FLOOD_THRESHOLD && floodPool != null && floodPool.getParallelism() > 1) {
+            return opened + parallelFloodFill(Arrays.copyOf(floodStack, size));
+         }
+         int cell = floodStack[--size];
+         int r = cell / numCols;
+         int c = cell % numCols;
+         for (int nr = Math.max(r - 1, 0); nr <= Math.min(r + 1, numRows - 1); nr++) {
+            for (int nc = Math.max(c - 1, 0); nc <= Math.min(c + 1, numCols - 1); nc++) {
+               int neighbor = index(nr, nc);
+               int status = mineData[neighbor];
+               if (status != COVERED && status != QUESTION) { // already open (includes the cell itself) or guessed
+                  continue;
+               }
+               int count = mineField.numAdjacentMines(nr, nc); // neighbors of an empty square are never mines
+               setStatus(neighbor, count);
+               opened++;
+               if (count == 0) {
+                  if (size == floodStack.length) {
+                     floodStack = Arrays.copyOf(floodStack, size * 2);
+                  }
+                  floodStack[size++] = neighbor;
+               }
+            }
+         }
+      }
+      return opened;
+   }
+
+   /**
+    * Opens a whole opening of the minefield (see MineField.openingAt) from its
+    * list of squares, if none of them has been opened or guessed yet: then a
+    * flood fill from any of its squares would open exactly those squares. Takes
+    * one pass over the list to check, and one to open.
+    * 
+    * @param opening the opening
+    * @return whether it was opened (otherwise nothing was changed)
+    */
+   private boolean openOpening(int opening) {
+      int[] cells = mineField.openingCells();
+      int from = mineField.openingStart(opening);
+      int to = mineField.openingStart(opening + 1);
+      for (int i = from; i < to; i++) {
+         int status = mineData[Math.max(cells[i], ~cells[i])]; // numbered squares around it are listed as ~index
+         if (status != COVERED && status != QUESTION) {
+            return false;
+         }
+      }
+      for (int i = from; i < to; i++) {
+         int cell = cells[i];
+         if (cell >= 0) {
+            setStatus(cell, 0);
+         }
+         else {
+            setStatus(~cell, mineField.numAdjacentMines(~cell / numCols, ~cell % numCols));
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Goes on with a flood fill in parallel on floodPool, from a frontier of open
+    * empty squares whose neighbors haven't been looked at yet. Each round splits
+    * the frontier into chunks of FLOOD_CHUNK squares, one task each; a task
+    * floods from its chunk until it has expanded FLOOD_TASK_BUDGET squares,
+    * claiming squares with a compare-and-set, and leaves what it didn't get to for
+    * the next round's frontier. Then the squares claimed are recorded, as
+    * setStatus would have, chunk by chunk; which chunk claimed a square depends
+    * on the race, so the order they're recorded in isn't deterministic.
+    * 
+    * @param frontier the open empty squares to go on from
+    * @return the number of squares that were opened
+    */
+   private int parallelFloodFill(int[] frontier) {
+      int opened = 0;
+      while (frontier.length > 0) {
+         FloodChunk[] chunks = new FloodChunk[(frontier.length + FLOOD_CHUNK - 1) / FLOOD_CHUNK];
+         floodPool.invoke(new FloodTask(frontier, chunks, 0, chunks.length));
+         IntBuffer next = new IntBuffer();
+         for (FloodChunk chunk : chunks) {
+            int claims = chunk.claimed.size();
+            int[] claimed = chunk.claimed.array();
+            for (int i = 0; i < claims && (history != null || !listeners.isEmpty()); i += 2) {
+               if (history != null) {
+                  history.add(claimed[i]);
+                  history.add(claimed[i + 1]);
+               }
+               if (!listeners.isEmpty()) {
+                  changedSquares.add(claimed[i]);
+               }
+            }
+            coveredSafeSquares -= claims / 2; // COVERED or QUESTION to a number, see setStatus
+            opened += claims / 2;
+            hash ^= chunk.hash;
+            for (int i = 0; i < chunk.frontier.size(); i++) {
+               next.add(chunk.frontier.get(i));
+            }
+         }
+         frontier = Arrays.copyOf(next.array(), next.size());
+      }
+      return opened;
+   }
+
+   /**
+    * Returns the number of neighbors of a square that have the given status.
+    * 
+    * @param row    row of the square
+    * @param col    col of the square
+    * @param status the status to count
+    * @return number of neighbors (not counting the square itself) with that status
+    */
+   private int countAround(int row, int col, int status) {
+      int numRows = mineField.numRows();
+      int count = 0;
+      for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, numRows - 1); r++) {
+         for (int c = Math.max(col - 1, 0); c <= Math.min(col + 1, numCols - 1); c++) {
+            if ((r != row || c != col) && mineData[index(r, c)] == status) {
+               count++;
+            }
+         }
+      }
+      return count;
+   }
+
+   /**
+    * Changes the status of a square, remembering that it changed if anyone is
+    * listening, and its old status if actions are being recorded. All changes to
+    * mineData outside of a reset go through here, and the counters behind
+    * numMinesLeft() and isGameOver() are kept up to date here from the old and new
+    * status, so they come out right whichever way a square changes, including
+    * during undo and redo.
+    * 
+    * @param cell   row-major index of the square
+    * @param status the new status
+    */
+   private void setStatus(int cell, int status) {
+      int old = mineData[cell];
+      if (old < 0 && status < 0) { // guessing: only moves between covered states count as guesses
+         minesFound += (status == MINE_GUESS ? 1 : 0) - (old == MINE_GUESS ? 1 : 0);
+      }
+      else if (old < 0 && status <= 8) {
+         coveredSafeSquares--;
+      }
+      else if (status < 0 && old <= 8) {
+         coveredSafeSquares++;
+      }
+      numExploded += (status == EXPLODED_MINE ? 1 : 0) - (old == EXPLODED_MINE ? 1 : 0);
+      hash ^= zobristKey(cell, old) ^ zobristKey(cell, status);
+      mineData[cell] = (byte) status;
+      if (history != null) {
+         history.add(cell);
+         history.add(old);
+      }
+      if (!listeners.isEmpty()) {
+         changedSquares.add(cell);
+      }
+   }
+
+   /**
+    * Starts recording a new action for undo.
+    */
+   private void beginAction() {
+      if (undoEnabled) {
+         undoMarks.add(undoLog.size());
+      }
+   }
+
+   /**
+    * Finishes the action begun by beginAction. An action that changed nothing
+    * is dropped, and one that changed something makes the undone actions
+    * impossible to redo. Then tells the listeners what changed.
+    */
+   private void endAction() {
+      if (undoEnabled) {
+         if (undoMarks.get(undoMarks.size() - 1) == undoLog.size()) {
+            undoMarks.removeLast();
+         }
+         else {
+            redoLog.clear();
+            redoMarks.clear();
+         }
+      }
+      fireSquaresChanged();
+   }
+
+   /**
+    * Takes the last action off one history and applies it backwards, recording
+    * what it overwrites as the last action on the other history. Used both ways
+    * round by undo and redo.
+    * 
+    * @param fromLog   the (index, old status) pairs to apply
+    * @param fromMarks where each action in fromLog starts
+    * @param toLog     receives the (index, overwritten status) pairs
+    * @param toMarks   where each action in toLog starts
+    * @return whether there was an action to apply
+    */
+   private boolean rewind(IntBuffer fromLog, IntBuffer fromMarks, IntBuffer toLog, IntBuffer toMarks) {
+      lastUncovered = 0;
+      if (fromMarks.size() == 0) {
+         return false;
+      }
+      int start = fromMarks.removeLast();
+      toMarks.add(toLog.size());
+      history = toLog;
+      for (int i = fromLog.size() - 2; i >= start; i -= 2) { // latest change first
+         setStatus(fromLog.get(i), fromLog.get(i + 1));
+      }
+      history = undoLog;
+      fromLog.truncate(start);
+      fireSquaresChanged();
+      return true;
+   }
+
+   /**
+    * Forgets every action that could be undone or redone.
+    */
+   private void clearHistory() {
+      undoLog.clear();
+      undoMarks.clear();
+      redoLog.clear();
+      redoMarks.clear();
+      history = undoEnabled ? undoLog : null;
+   }
+
+   /**
+    * Tells the listeners which squares the current mutator changed (if any), and
+    * starts a new, empty set of changes.
+    */
+   private void fireSquaresChanged() {
+      if (changedSquares.size() == 0) {
+         return;
+      }
+      for (FieldListener listener : listeners) {
+         listener.squaresChanged(this, changedSquares.array(), changedSquares.size());
+      }
+      changedSquares.clear();
+   }
+
+   /**
+    * Turns 8 statuses, a signed byte each, into their nibbles (status -
+    * QUESTION), still a byte each. Flipping the high bits first makes every byte
+    * positive, so adding 3 to each can't carry into the next.
+    * 
+    * @param statuses 8 statuses
+    * @return 8 nibbles
+    */
+   private static long toNibbles(long statuses) {
+      return ((statuses ^ HIGH_BITS) + THREES) ^ HIGH_BITS;
+   }
+
+   /**
+    * Packs 8 nibbles, one in the low half of each byte, into the low 32 bits.
+    * 
+    * @param nibbles 8 nibbles
+    * @return them packed, the first in the lowest 4 bits
+    */
+   private static long packNibbles(long nibbles) {
+      long x = (nibbles | (nibbles >>> 4)) & 0x00ff00ff00ff00ffL;
+      x = (x | (x >>> 8)) & 0x0000ffff0000ffffL;
+      return (x | (x >>> 16)) & 0x00000000ffffffffL;
+   }
+
+   /**
+    * Spreads 8 nibbles packed in the low 32 bits out to one per byte; the
+    * reverse of packNibbles.
+    * 
+    * @param packed 8 packed nibbles (higher bits are ignored)
+    * @return 8 nibbles, a byte each
+    */
+   private static long unpackNibbles(long packed) {
+      long x = packed & 0x00000000ffffffffL;
+      x = (x | (x << 16)) & 0x0000ffff0000ffffL;
+      x = (x | (x << 8)) & 0x00ff00ff00ff00ffL;
+      return (x | (x << 4)) & 0x0f0f0f0f0f0f0f0fL;
+   }
+
+   /**
+    * Returns the high bit of every byte of 8 nibbles that is at least a given
+    * value (adding the difference to 128 sets the high bit, and can't carry).
+    * 
+    * @param nibbles 8 nibbles, a byte each
+    * @param value   the value to compare them to, 0 to 15
+    * @return the high bits of the bytes that are at least value
+    */
+   private static long atLeast(long nibbles, int value) {
+      return (nibbles + (0x80 - value) * 0x0101010101010101L) & HIGH_BITS;
+   }
+
+   /**
+    * Returns the part of a window hash that stands for its size.
+    * 
+    * @param height number of rows
+    * @param width  number of columns
+    * @return a key for the size
+    */
+   private static long windowKey(int height, int width) {
+      return mix(((long) height << 32) ^ width ^ 0x5bd1e995L);
+   }
+
+   /**
+    * The SplitMix64 finalizer: scrambles the bits of a long so that nearby inputs
+    * give unrelated outputs.
+    * 
+    * @param z the input
+    * @return the scrambled value
+    */
+   private static long mix(long z) {
+      z += 0x9e3779b97f4a7c15L;
+      z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+      z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+      return z ^ (z >>> 31);
+   }
+
+   /**
+    * Tells the listeners a move is being made.
+    * 
+    * @param move the kind of move (UNCOVER_MOVE etc.)
+    * @param cell row-major index of the square it's made on, or 0
+    */
+   private void fireMoveMade(int move, int cell) {
+      for (FieldListener listener : listeners) {
+         listener.moveMade(this, move, cell);
+      }
+   }
+
+   /**
+    * Returns the row-major index of the square at (row, col) in mineData.
+    * 
+    * @param row row of the square
+    * @param col col of the square
+    * @return index of the square
+    */
+   private int index(int row, int col) {
+      return row * numCols + col;
+   }
+
+   /**
+    * Returns the number of squares that don't have a mine, according to the
+    * number of mines the underlying MineField will have.
+    * 
+    * @return number of non-mine squares
+    */
+   private int numSafeSquares() {
+      return mineField.numRows() * mineField.numCols() - mineField.numMines();
+   }
+
+   //-------------------------------------------------------------------------------------
+   // INNER CLASS FloodTask
+   // floods from a range of chunks of the frontier of a parallel flood fill, splitting in halves
+   @SuppressWarnings("serial") // only ever run in a pool, never serialized
+   private class FloodTask extends RecursiveAction {
+
+      private final int[] frontier;
+      private final FloodChunk[] chunks; // where each chunk's results go
+      private final int from; // range of chunks to do
+      private final int to;
+
+      FloodTask(int[] frontier, FloodChunk[] chunks, int from, int to) {
+         this.frontier = frontier;
+         this.chunks = chunks;
+         this.from = from;
+         this.to = to;
+      }
+
+      protected void compute() {
+         if (to - from > 1) {
+            int middle = (from + to) >>> 1;
+            invokeAll(new FloodTask(frontier, chunks, from, middle), new FloodTask(frontier, chunks, middle, to));
+            return;
+         }
+         int start = from * FLOOD_CHUNK;
+         chunks[from] = new FloodChunk(frontier, start, Math.min(start + FLOOD_CHUNK, frontier.length));
+      }
+   }
+   //------ END OF INNER CLASS FloodTask----------------------------------------------
+
+   //-------------------------------------------------------------------------------------
+   // INNER CLASS FloodChunk
+   // the flood from one chunk of a parallel flood fill's frontier, and what it claimed
+   private class FloodChunk {
+
+      final IntBuffer claimed = new IntBuffer(); // (row-major index, old status) of each square opened
+      final IntBuffer frontier = new IntBuffer(); // open empty squares left for the next round
+      long hash; // xor of the changes to the Zobrist hash
+
+      /**
+       * Floods from some frontier squares, until FLOOD_TASK_BUDGET squares have
+       * been expanded.
+       * 
+       * @param squares the frontier
+       * @param from    first square of this chunk
+       * @param to      just past the last square of this chunk
+       */
+      FloodChunk(int[] squares, int from, int to) {
+         int numRows = mineField.numRows();
+         int[] stack = Arrays.copyOfRange(squares, from, Math.max(to, from + INITIAL_STACK_SIZE));
+         int size = to - from;
+         for (int expanded = 0; size > 0 && expanded < FLOOD_TASK_BUDGET; expanded++) {
+            int cell = stack[--size];
+            int r = cell / numCols;
+            int c = cell % numCols;
+            for (int nr = Math.max(r - 1, 0); nr <= Math.min(r + 1, numRows - 1); nr++) {
+               for (int nc = Math.max(c - 1, 0); nc <= Math.min(c + 1, numCols - 1); nc++) {
+                  int neighbor = index(nr, nc);
+                  byte status = (byte) STATUS.getAcquire(mineData, neighbor);
+                  if (status != COVERED && status != QUESTION) { // already open or guessed
+                     continue;
+                  }
+                  byte count = (byte) mineField.numAdjacentMines(nr, nc);
+                  if (!STATUS.compareAndSet(mineData, neighbor, status, count)) {
+                     continue; // another task opened it (nothing else changes squares meanwhile)
                   }
-                  break;
-               case MINE_GUESS:
-                  mineData[r][c] = mineField.hasMine(r, c) ? MINE : INCORRECT_GUESS;
-                  break;
+                  claimed.add(neighbor);
+                  claimed.add(status);
+                  hash ^= zobristKey(neighbor, status) ^ zobristKey(neighbor, count);
+                  if (count == 0) {
+                     if (size == stack.length) {
+                        stack = Arrays.copyOf(stack, size * 2);
+                     }
+                     stack[size++] = neighbor;
+                  }
+               }
             }
          }
+         for (int i = 0; i < size; i++) {
+            frontier.add(stack[i]);
+         }
       }
    }
+   //------ END OF INNER CLASS FloodChunk----------------------------------------------
 
 }
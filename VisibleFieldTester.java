@@ -57,6 +57,12 @@ public class VisibleFieldTester{
       AssertFalse(field.isGameOver(), "Does not lose when clicking an adjacent square");
       field.uncover(0,0);
       AssertTrue(field.isGameOver(), "Does lose when clicking a bomb");
+      Assert(VisibleField.EXPLODED_MINE, field.getStatus(0,0), "Exploded mine before reveal");
+      Assert(VisibleField.COVERED, field.getStatus(3,3), "Other squares untouched before reveal");
+      field.revealMines();
+      Assert(VisibleField.INCORRECT_GUESS, field.getStatus(1,1), "Reveal marks incorrect guess");
+      Assert(VisibleField.COVERED, field.getStatus(3,3), "Reveal leaves safe squares covered");
+      Assert(0, field.numMinesLeft(), "Reveal does not change mines left");
       
       
    }
@@ -83,12 +89,429 @@ public class VisibleFieldTester{
       VisibleField field = new VisibleField(new MineField(testData));
       field.uncover(3,3);
       Assert(0,field.getStatus(3,3), "Uncovers call success");
+      AssertTrue(field.isGameOver(), "Won before reset");
       field.resetGameDisplay();
       Assert(VisibleField.COVERED,field.getStatus(3,3), "Reset Game Display success");
+      AssertFalse(field.isGameOver(), "Reset Game Display restarts the game");
       
       
    }
    
+   private static void testLargeEmptyRegion(){
+      boolean [][] testData = new boolean[2000][];
+      for(int i = 0;i<2000;i++){
+         testData[i] = new boolean[2000];
+      }
+      testData[1999][0] = true;
+      VisibleField field = new VisibleField(new MineField(testData));
+      field.cycleGuess(0,1999);
+      AssertTrue(field.uncover(0,0), "Large region uncover is not a mine");
+      Assert(2000*2000 - 2, field.numLastUncovered(), "Large region opened count");
+      Assert(VisibleField.MINE_GUESS, field.getStatus(0,1999), "Large region keeps guess");
+      AssertFalse(field.isGameOver(), "Large region not won while a safe square is guessed");
+      
+      
+   }
+   
+   private static void testChangeListener(){
+      boolean [][] testData = new boolean[4][];
+      for(int i = 0;i<4;i++){
+         testData[i] = new boolean[4];
+      }
+      testData[0][0] = true;
+      VisibleField field = new VisibleField(new MineField(testData));
+      final int[] calls = new int[3]; // squaresChanged calls, squares reported, fieldReset calls
+      field.addFieldListener(new FieldListener(){
+         public void squaresChanged(VisibleField changed, int[] cells, int count){
+            calls[0]++;
+            calls[1] += count;
+         }
+         public void fieldReset(VisibleField changed){
+            calls[2]++;
+         }
+      });
+      field.cycleGuess(2,2);
+      Assert(1, calls[1], "Guess reports one square");
+      field.uncover(3,3);
+      Assert(2, calls[0], "Uncover reports once");
+      Assert(1 + field.numLastUncovered(), calls[1], "Uncover reports every opened square");
+      field.uncover(3,3);
+      Assert(2, calls[0], "No report when nothing changed");
+      field.resetGameDisplay();
+      Assert(1, calls[2], "Reset reported");
+      
+      
+   }
+   
+   private static void testChord(){
+      boolean [][] testData = new boolean[4][];
+      for(int i = 0;i<4;i++){
+         testData[i] = new boolean[4];
+      }
+      testData[0][0] = true;
+      VisibleField field = new VisibleField(new MineField(testData));
+      final int[] calls = new int[1];
+      field.addFieldListener(new FieldListener(){
+         public void squaresChanged(VisibleField changed, int[] cells, int count){
+            calls[0]++;
+         }
+         public void fieldReset(VisibleField changed){
+         }
+      });
+      field.uncover(1,1);
+      AssertTrue(field.chord(1,1), "Chord without guesses is not a mine");
+      Assert(0, field.numLastUncovered(), "Chord without enough guesses opens nothing");
+      field.cycleGuess(0,0);
+      calls[0] = 0;
+      AssertTrue(field.chord(1,1), "Chord with correct guess is not a mine");
+      Assert(14, field.numLastUncovered(), "Chord opens neighbors and their regions");
+      Assert(1, calls[0], "Chord reports once");
+      AssertTrue(field.isGameOver(), "Chord can win the game");
+      
+      field.resetGameDisplay();
+      field.uncover(1,1);
+      field.cycleGuess(0,1);
+      AssertFalse(field.chord(1,1), "Chord with wrong guess uncovers a mine");
+      Assert(VisibleField.EXPLODED_MINE, field.getStatus(0,0), "Chord exploded the mine");
+      AssertTrue(field.isGameOver(), "Chord can lose the game");
+   }
+   
+   private static void testUndoRedo(){
+      boolean [][] testData = new boolean[5][];
+      for(int i = 0;i<5;i++){
+         testData[i] = new boolean[5];
+      }
+      testData[0][0] = true;
+      testData[4][4] = true;
+      VisibleField field = new VisibleField(new MineField(testData));
+      field.setUndoEnabled(true);
+      AssertFalse(field.undo(), "Nothing to undo at start");
+      VisibleField plain = new VisibleField(new MineField(testData));
+      plain.uncover(2,2);
+      AssertFalse(plain.canUndo(), "Undo off by default");
+      field.cycleGuess(0,0);
+      field.uncover(2,2);
+      field.cycleGuess(1,1);   // already open, so not an action
+      Assert(23, field.numLastUncovered(), "Flood before undo");
+      AssertTrue(field.isGameOver(), "Won before undo");
+      AssertTrue(field.undo(), "Undo flood");
+      AssertFalse(field.isUncovered(2,2), "Flood undone");
+      AssertFalse(field.isGameOver(), "Not won after undo");
+      Assert(1, field.numMinesLeft(), "Guess kept after undoing flood");
+      AssertTrue(field.undo(), "Undo guess");
+      Assert(VisibleField.COVERED, field.getStatus(0,0), "Guess undone");
+      Assert(2, field.numMinesLeft(), "Mines left after undoing guess");
+      AssertFalse(field.canUndo(), "Nothing left to undo");
+      AssertTrue(field.redo(), "Redo guess");
+      AssertTrue(field.redo(), "Redo flood");
+      AssertTrue(field.isGameOver(), "Won again after redo");
+      Assert(1, field.numMinesLeft(), "Mines left after redo");
+      
+      field.resetGameDisplay();
+      field.uncover(4,4);
+      field.revealMines();
+      AssertTrue(field.undo(), "Undo reveal");
+      Assert(VisibleField.COVERED, field.getStatus(0,0), "Reveal undone");
+      AssertTrue(field.undo(), "Undo explosion");
+      AssertFalse(field.isGameOver(), "Not lost after undoing explosion");
+      field.cycleGuess(0,0);
+      AssertFalse(field.canRedo(), "New action forgets redo");
+      field.resetGameDisplay();
+      AssertFalse(field.canUndo(), "Reset forgets undo");
+   }
+   
+   private static void testReplay(){
+      try{
+         java.nio.file.Path file = java.nio.file.Files.createTempFile("replay", ".bin");
+         MineField mineField = new MineField(9,9,10,5);
+         VisibleField field = new VisibleField(mineField);
+         field.setUndoEnabled(true);
+         ReplayWriter writer = new ReplayWriter(file);
+         writer.attach(field);
+         int[][] finals = new int[3][];
+         java.util.SplittableRandom random = new java.util.SplittableRandom(5);
+         for(int game = 0;game<3;game++){
+            field.resetGameDisplay();
+            field.cycleGuess(0,0);
+            mineField.populateMineField(4,4);
+            field.uncover(4,4);
+            field.undo();
+            field.redo();
+            while(!field.isGameOver()){
+               field.uncover(random.nextInt(9), random.nextInt(9));
+            }
+            finals[game] = statuses(field);
+         }
+         writer.close();
+         ReplayReader reader = new ReplayReader(file);
+         int games = 0;
+         int mismatches = 0;
+         while(reader.nextGame()){
+            reader.playGame();
+            if(games < 3 && !java.util.Arrays.equals(finals[games], statuses(reader.getField()))){
+               mismatches++;
+            }
+            games++;
+         }
+         AssertFalse(reader.hasTruncatedGame(), "Whole replay not truncated");
+         writer.close();   // closing again does nothing
+         byte[] bytes = java.nio.file.Files.readAllBytes(file);
+         java.nio.file.Files.write(file, java.util.Arrays.copyOf(bytes, bytes.length - 3));   // last game cut short
+         reader = new ReplayReader(file);
+         int wholeGames = 0;
+         while(reader.nextGame()){
+            reader.playGame();
+            wholeGames++;
+         }
+         java.nio.file.Files.delete(file);
+         Assert(3, games, "Replay has every game");
+         Assert(0, mismatches, "Replayed games end the same way");
+         Assert(2, wholeGames, "Truncated game skipped");
+         AssertTrue(reader.hasTruncatedGame(), "Truncated game noticed");
+      }
+      catch(java.io.IOException e){
+         AssertTrue(false, "Replay file written and read: " + e);
+      }
+   }
+   
+   private static void testSnapshot(){
+      try{
+         java.nio.file.Path file = java.nio.file.Files.createTempFile("snapshot", ".bin");
+         MineField mineField = new MineField(9,9,10,8);
+         mineField.populateMineField(4,4);
+         VisibleField field = new VisibleField(mineField);
+         field.uncover(4,4);
+         field.cycleGuess(0,0);
+         field.cycleGuess(8,8);
+         field.cycleGuess(8,8);
+         GameSnapshot.save(field, file);
+         VisibleField loaded = GameSnapshot.load(file);
+         AssertTrue(java.util.Arrays.equals(statuses(field), statuses(loaded)), "Snapshot keeps statuses");
+         Assert(field.numMinesLeft(), loaded.numMinesLeft(), "Snapshot keeps mines left");
+         int mismatches = 0;
+         for(int i = 0;i<81;i++){
+            if(mineField.hasMine(i / 9, i % 9) != loaded.getMineField().hasMine(i / 9, i % 9)){
+               mismatches++;
+            }
+         }
+         Assert(0, mismatches, "Snapshot keeps mines");
+         AssertFalse(loaded.isGameOver(), "Loaded game in progress");
+         
+         MineField big = new MineField(1000,1000,200000,9);   // big enough to be memory-mapped
+         big.populateMineField(500,500);
+         VisibleField bigField = new VisibleField(big);
+         bigField.uncover(500,500);
+         GameSnapshot.save(bigField, file);
+         Assert(bigField.numLastUncovered(), 1000*1000 - 200000 - GameSnapshot.load(file).numCoveredSafeSquares(),
+                "Big snapshot keeps uncovered count");
+         
+         java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(file,
+               java.nio.file.StandardOpenOption.WRITE);
+         channel.write(java.nio.ByteBuffer.wrap(new byte[]{ 1 }), 100);
+         channel.close();
+         boolean rejected = false;
+         try{
+            GameSnapshot.load(file);
+         }
+         catch(java.io.IOException e){
+            rejected = true;
+         }
+         AssertTrue(rejected, "Damaged snapshot rejected");
+         java.nio.file.Files.delete(file);
+      }
+      catch(java.io.IOException e){
+         AssertTrue(false, "Snapshot written and read: " + e);
+      }
+   }
+   
+   private static void testZobristHash(){
+      MineField mineField = new MineField(9,9,10,12);
+      mineField.populateMineField(4,4);
+      VisibleField first = new VisibleField(mineField);
+      first.setUndoEnabled(true);
+      VisibleField second = new VisibleField(mineField);
+      Assert(0, (int) first.zobristHash(), "New game hashes to 0");
+      first.uncover(4,4);
+      first.cycleGuess(0,0);
+      long afterMoves = first.zobristHash();
+      second.cycleGuess(0,0);
+      second.cycleGuess(1,1);
+      second.uncover(4,4);
+      AssertFalse(afterMoves == second.zobristHash(), "Different statuses hash differently");
+      second.cycleGuess(1,1);
+      second.cycleGuess(1,1);
+      AssertTrue(afterMoves == second.zobristHash(), "Same statuses hash the same whatever the order");
+      first.cycleGuess(8,8);
+      first.undo();
+      AssertTrue(afterMoves == first.zobristHash(), "Undo restores hash");
+      
+      boolean [][] testData = new boolean[6][];
+      for(int i = 0;i<6;i++){
+         testData[i] = new boolean[6];
+      }
+      testData[0][0] = true;
+      testData[5][5] = true;
+      VisibleField field = new VisibleField(new MineField(testData));
+      field.cycleGuess(1,1);
+      field.cycleGuess(4,4);
+      AssertTrue(field.windowHash(0,0,3,3) == field.windowHash(3,3,3,3), "Same pattern same window hash");
+      AssertFalse(field.windowHash(0,0,3,3) == field.windowHash(0,0,3,4), "Window size is hashed");
+      try{
+         java.nio.file.Path file = java.nio.file.Files.createTempFile("snapshot", ".bin");
+         GameSnapshot.save(first, file);
+         AssertTrue(afterMoves == GameSnapshot.load(file).zobristHash(), "Loaded game has the same hash");
+         java.nio.file.Files.delete(file);
+      }
+      catch(java.io.IOException e){
+         AssertTrue(false, "Snapshot written and read: " + e);
+      }
+   }
+   
+   private static void testParallelFlood(){
+      System.out.println("Testing Parallel Flood");
+      MineField mineField = new MineField(1500,1500,22500,21);   // 1% mines, so most of it is one region
+      mineField.populateMineField(750,750);
+      VisibleField sequential = new VisibleField(mineField);
+      sequential.setUndoEnabled(true);
+      VisibleField parallel = new VisibleField(mineField);
+      parallel.setUndoEnabled(true);
+      sequential.setFloodPool(null);
+      java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(4);
+      parallel.setFloodPool(pool);
+      int[] changed = new int[1];
+      parallel.addFieldListener(new FieldListener(){
+         public void squaresChanged(VisibleField f, int[] cells, int count){
+            changed[0] += count;
+         }
+         public void fieldReset(VisibleField f){
+         }
+      });
+      for(VisibleField field : new VisibleField[]{ sequential, parallel }){
+         for(int i = 0;i<1500;i += 7){
+            field.cycleGuess(i, (i * 31) % 1500);   // guesses and question marks stop and don't stop the flood
+            if(i % 2 == 0){
+               field.cycleGuess(i, (i * 31) % 1500);
+            }
+         }
+      }
+      int row = 750;
+      int col = 750;
+      while(mineField.numAdjacentMines(row, col) != 0 || parallel.getStatus(row, col) == VisibleField.MINE_GUESS){
+         col++;
+      }
+      changed[0] = 0;
+      sequential.uncover(row, col);
+      parallel.uncover(row, col);
+      AssertGreaterThan(VisibleField.PARALLEL_FLOOD_THRESHOLD, parallel.numLastUncovered(), "Flood large enough to go parallel");
+      Assert(sequential.numLastUncovered(), parallel.numLastUncovered(), "Parallel flood opens as many squares");
+      int differences = 0;
+      for(int r = 0;r<1500;r++){
+         for(int c = 0;c<1500;c++){
+            if(sequential.getStatus(r,c) != parallel.getStatus(r,c)){
+               differences++;
+            }
+         }
+      }
+      Assert(0, differences, "Parallel flood opens the same squares");
+      Assert(sequential.numMinesLeft(), parallel.numMinesLeft(), "Parallel flood keeps mines left");
+      Assert(sequential.isGameOver() ? 1 : 0, parallel.isGameOver() ? 1 : 0, "Parallel flood keeps game state");
+      AssertTrue(sequential.zobristHash() == parallel.zobristHash(), "Parallel flood keeps hash");
+      Assert(parallel.numLastUncovered(), changed[0], "Listener told every square");
+      parallel.undo();
+      sequential.undo();
+      differences = 0;
+      for(int r = 0;r<1500;r++){
+         for(int c = 0;c<1500;c++){
+            if(sequential.getStatus(r,c) != parallel.getStatus(r,c)){
+               differences++;
+            }
+         }
+      }
+      Assert(0, differences, "Parallel flood undone");
+      AssertTrue(sequential.zobristHash() == parallel.zobristHash(), "Undone hash");
+      pool.shutdown();
+   }
+   
+   private static void testOpenings(){
+      System.out.println("Testing Openings");
+      int differences = 0;
+      int wrongCounts = 0;
+      int notUndone = 0;
+      for(int seed = 0;seed<4;seed++){
+         MineField mineField = new MineField(300,300,1800,seed);   // large and sparse enough to open in bulk
+         mineField.populateMineField(150,150);
+         int start = 0;
+         while(mineField.openingOf(start) < 0){
+            start++;
+         }
+         int opening = mineField.openingOf(start);
+         int[] cells = mineField.openingCells();
+         int marked = cells[mineField.openingStart(opening + 1) - 1];   // a square the opening opens
+         marked = Math.max(marked, ~marked);   // numbered squares are listed complemented
+         VisibleField bulk = new VisibleField(mineField);
+         bulk.setUndoEnabled(true);
+         VisibleField flood = new VisibleField(mineField);
+         flood.cycleGuess(marked / 300, marked % 300);
+         flood.cycleGuess(marked / 300, marked % 300);   // a QUESTION opens like COVERED, but rules out opening in bulk
+         flood.uncover(start / 300, start % 300);
+         bulk.uncover(start / 300, start % 300);
+         for(int r = 0;r<300;r++){
+            for(int c = 0;c<300;c++){
+               if(bulk.getStatus(r,c) != flood.getStatus(r,c)){
+                  differences++;
+               }
+            }
+         }
+         if(bulk.numLastUncovered() != flood.numLastUncovered() || bulk.numLastUncovered() != mineField.openingSize(opening)){
+            wrongCounts++;
+         }
+         VisibleField noBulk = new VisibleField(mineField);
+         noBulk.setBulkOpenEnabled(false);
+         noBulk.uncover(start / 300, start % 300);
+         if(noBulk.numLastUncovered() != bulk.numLastUncovered()){
+            wrongCounts++;
+         }
+         bulk.undo();
+         for(int r = 0;r<300;r++){
+            for(int c = 0;c<300;c++){
+               if(bulk.getStatus(r,c) != VisibleField.COVERED){
+                  notUndone++;
+               }
+            }
+         }
+      }
+      Assert(0, differences, "Opening in bulk opens what a flood does");
+      Assert(0, wrongCounts, "Opening in bulk counts squares opened");
+      Assert(0, notUndone, "Opening in bulk undone");
+      
+      boolean [][] testData = new boolean[5][];
+      for(int i = 0;i<5;i++){
+         testData[i] = new boolean[5];
+      }
+      testData[2][2] = true;
+      VisibleField field = new VisibleField(new MineField(testData));
+      field.setUndoEnabled(true);
+      field.cycleGuess(0,4);
+      AssertTrue(field.uncover(4,0), "Uncover next to a guess");
+      Assert(23, field.numLastUncovered(), "Guess in an opening stops the flood");
+      Assert(VisibleField.MINE_GUESS, field.getStatus(0,4), "Guess kept");
+      field.undo();
+      Assert(VisibleField.COVERED, field.getStatus(4,0), "Opening undone");
+      field.cycleGuess(0,4);   // MINE_GUESS to QUESTION to COVERED
+      field.cycleGuess(0,4);
+      field.uncover(4,0);
+      Assert(24, field.numLastUncovered(), "Whole opening opened");
+      System.out.println();
+   }
+   
+   private static int[] statuses(VisibleField field){
+      int[] result = new int[81];
+      for(int i = 0;i<81;i++){
+         result[i] = field.getStatus(i / 9, i % 9);
+      }
+      return result;
+   }
+   
    public static void main(String[] args){
       System.out.println("Constructor Test");
       
@@ -99,6 +522,15 @@ public class VisibleFieldTester{
       testLoseCondition();
       testWinCondition();
       testResetDisplay();
+      testLargeEmptyRegion();
+      testChangeListener();
+      testChord();
+      testUndoRedo();
+      testReplay();
+      testSnapshot();
+      testZobristHash();
+      testParallelFlood();
+      testOpenings();
       
    }
 }
\ No newline at end of file